@@ -0,0 +1,40 @@
+package com.augefarma.controle_feira.config.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.SerializedPayloadDto;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Writes a SerializedPayloadDto as its encoded bytes, without going through Jackson again, tagged with the content
+ * type of its encoding.
+ */
+public class SerializedPayloadMessageConverter extends AbstractMessageConverter {
+
+    public SerializedPayloadMessageConverter() {
+        super(new MimeType[] {MimeTypeUtils.APPLICATION_JSON, MimeTypeUtils.APPLICATION_OCTET_STREAM});
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SerializedPayloadDto.class.equals(clazz);
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+        // Only used for outbound messages
+        return false;
+    }
+
+    @Override
+    protected MimeType getDefaultContentType(Object payload) {
+        return ((SerializedPayloadDto) payload).getContentType();
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return ((SerializedPayloadDto) payload).getBytes();
+    }
+}
@@ -1,11 +1,17 @@
 package com.augefarma.controle_feira.config.socket;
 
+import com.augefarma.controle_feira.services.socket.SlowSessionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -14,6 +20,28 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer{
     @Value("${allowed.origins}")
     private String allowedOrigins;
 
+    @Value("${realtime.outbound.core-pool-size:4}")
+    private int outboundCorePoolSize;
+
+    @Value("${realtime.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${realtime.outbound.queue-capacity:1000}")
+    private int outboundQueueCapacity;
+
+    @Value("${realtime.websocket.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    @Value("${realtime.websocket.send-buffer-size-limit:262144}")
+    private int sendBufferSizeLimit;
+
+    private final SlowSessionInterceptor slowSessionInterceptor;
+
+    @Autowired
+    public WebSocketConfig(SlowSessionInterceptor slowSessionInterceptor) {
+        this.slowSessionInterceptor = slowSessionInterceptor;
+    }
+
     /**
      * Configures the message broker for WebSocket communication.
      *
@@ -21,7 +49,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer{
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enables a simple in-memory message broker for handling messages with destinations starting with "/topic"
+        // Enables a simple in-memory message broker for handling messages with destinations starting with "/topic",
+        // including the scoped /topic/realtime/segment/{segment}/delta and /topic/realtime/laboratory/{id}/delta
         config.enableSimpleBroker("/topic");
 
         // Sets the prefix for application destinations where messages from clients will be routed
@@ -40,4 +69,43 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer{
                 // Allows connections from any origin (restrict origins in production for security)
                 .setAllowedOrigins(allowedOrigins);
     }
+
+    /**
+     * Registers the converter for pre-serialized payloads ahead of the default converters.
+     *
+     * @param messageConverters the list to add custom converters to
+     * @return true so the default converters are still registered
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new SerializedPayloadMessageConverter());
+        return true;
+    }
+
+    /**
+     * Limits how long a send to one session may take and how much may be buffered for it. A session exceeding either
+     * limit is closed and resyncs when it reconnects, instead of holding back the others.
+     *
+     * @param registration the WebSocketTransportRegistration to configure
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    /**
+     * Sizes the executor delivering messages to clients, so one slow session occupies one thread at most, and drops
+     * superseded full-state messages for sessions that fall behind.
+     *
+     * @param registration the ChannelRegistration of the client outbound channel
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(slowSessionInterceptor);
+    }
 }
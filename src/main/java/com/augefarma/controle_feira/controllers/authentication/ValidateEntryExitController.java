@@ -1,17 +1,26 @@
 package com.augefarma.controle_feira.controllers.authentication;
 
 import com.augefarma.controle_feira.dtos.authentication.CpfEntityDto;
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemDto;
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemResultDto;
 import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ValidateEntryExitResponseDto;
 import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.exceptions.PayloadTooLargeException;
 import com.augefarma.controle_feira.services.authentication.entry_exit.ValidateEntryService;
 import com.augefarma.controle_feira.services.authentication.entry_exit.ValidateExitService;
+import com.augefarma.controle_feira.services.badge.QRCodeDecoderService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
+import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/validate")
@@ -19,12 +28,25 @@ public class ValidateEntryExitController {
 
     private final ValidateEntryService validateEntryService;
     private final ValidateExitService validateExitService;
+    private final QRCodeDecoderService qrCodeDecoderService;
+    private final int maxBatchSize;
+    private final int maxFrameBytes;
 
+    /**
+     * @param maxBatchSize  most scans accepted in one batch, all of them validated in a single transaction
+     * @param maxFrameBytes largest camera frame accepted, in bytes
+     */
     @Autowired
     public ValidateEntryExitController(ValidateEntryService validateEntryService,
-                                       ValidateExitService validateExitService) {
+                                       ValidateExitService validateExitService,
+                                       QRCodeDecoderService qrCodeDecoderService,
+                                       @Value("${checkin.batch.max-size:500}") int maxBatchSize,
+                                       @Value("${badge.decoder.max-frame-bytes:8388608}") int maxFrameBytes) {
         this.validateEntryService = validateEntryService;
         this.validateExitService = validateExitService;
+        this.qrCodeDecoderService = qrCodeDecoderService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxFrameBytes = maxFrameBytes;
     }
 
 
@@ -46,4 +68,100 @@ public class ValidateEntryExitController {
 
         return ResponseEntity.ok(validateEntryExitResponseDto);
     }
+
+
+    /**
+     * Validates an entry from a camera frame, for kiosks without a hardware scanner.
+     *
+     * @param request      the request whose body is a JPEG or PNG frame with the badge QR code around its center
+     * @param eventSegment the segment of the event being entered
+     * @return a ResponseEntity with the validation result
+     * @throws PayloadTooLargeException if the frame is larger than configured
+     */
+    @PostMapping(value = "/entry/frame", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<ValidateEntryExitResponseDto> validateEntryFrame(HttpServletRequest request,
+                                                                           @RequestParam EventSegment eventSegment)
+            throws IOException {
+        String scannedCode = qrCodeDecoderService.decode(readFrame(request));
+
+        return ResponseEntity.ok(validateEntryService.validateEntryFair(scannedCode, eventSegment));
+    }
+
+
+    /**
+     * Validates an exit from a camera frame, for kiosks without a hardware scanner.
+     *
+     * @param request      the request whose body is a JPEG or PNG frame with the badge QR code around its center
+     * @param eventSegment the segment of the event being left
+     * @return a ResponseEntity with the validation result
+     * @throws PayloadTooLargeException if the frame is larger than configured
+     */
+    @PostMapping(value = "/exit/frame", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<ValidateEntryExitResponseDto> validateExitFrame(HttpServletRequest request,
+                                                                          @RequestParam EventSegment eventSegment)
+            throws IOException {
+        String scannedCode = qrCodeDecoderService.decode(readFrame(request));
+
+        return ResponseEntity.ok(validateExitService.validateExitBuffet(scannedCode, eventSegment));
+    }
+
+
+    /**
+     * Replays an ordered batch of entry scans buffered by a gate scanner while it was offline.
+     *
+     * @param scans the buffered scans, in capture order
+     * @return a ResponseEntity with one result per scan, in the same order
+     * @throws PayloadTooLargeException if the batch has more scans than configured
+     */
+    @PostMapping("/entry/batch")
+    public ResponseEntity<List<ScanBatchItemResultDto>> validateEntryBatch(@RequestBody List<ScanBatchItemDto> scans) {
+        checkBatchSize(scans);
+
+        return ResponseEntity.ok(validateEntryService.validateEntryBatch(scans));
+    }
+
+    /**
+     * Replays an ordered batch of exit scans buffered by a gate scanner while it was offline.
+     *
+     * @param scans the buffered scans, in capture order
+     * @return a ResponseEntity with one result per scan, in the same order
+     * @throws PayloadTooLargeException if the batch has more scans than configured
+     */
+    @PostMapping("/exit/batch")
+    public ResponseEntity<List<ScanBatchItemResultDto>> validateExitBatch(@RequestBody List<ScanBatchItemDto> scans) {
+        checkBatchSize(scans);
+
+        return ResponseEntity.ok(validateExitService.validateExitBatch(scans));
+    }
+
+
+    /**
+     * Reads a camera frame without ever buffering more than the configured limit: a declared length over it is
+     * refused before anything is read, and a chunked body is cut off one byte past it.
+     */
+    private byte[] readFrame(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxFrameBytes) {
+            throw frameTooLarge();
+        }
+
+        byte[] frame = request.getInputStream().readNBytes(maxFrameBytes + 1);
+
+        if (frame.length > maxFrameBytes) {
+            throw frameTooLarge();
+        }
+
+        return frame;
+    }
+
+    private PayloadTooLargeException frameTooLarge() {
+        return new PayloadTooLargeException("Imagem excede o máximo de " + maxFrameBytes
+                + " bytes; envie um quadro menor");
+    }
+
+    private void checkBatchSize(List<ScanBatchItemDto> scans) {
+        if (scans.size() > maxBatchSize) {
+            throw new PayloadTooLargeException("Lote com " + scans.size() + " leituras excede o máximo de "
+                    + maxBatchSize + "; envie as leituras em lotes menores");
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package com.augefarma.controle_feira.controllers.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeJobDto;
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.services.badge.BadgeExportService;
+import com.augefarma.controle_feira.services.badge.BadgeJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/badges")
+public class BadgeController {
+
+    private final BadgeExportService badgeExportService;
+    private final BadgeJobService badgeJobService;
+
+    @Autowired
+    public BadgeController(BadgeExportService badgeExportService, BadgeJobService badgeJobService) {
+        this.badgeExportService = badgeExportService;
+        this.badgeJobService = badgeJobService;
+    }
+
+    /**
+     * Endpoint to export the badges of every member of a laboratory.
+     *
+     * @param laboratoryId the ID of the laboratory
+     * @param format       PDF for one multi-page PDF (default) or ZIP for one PDF per member
+     * @return a ResponseEntity with status 200 (OK) streaming the badges
+     */
+    @GetMapping("/laboratory/{laboratoryId}")
+    public ResponseEntity<StreamingResponseBody> exportLaboratoryMemberBadges(
+            @PathVariable Long laboratoryId, @RequestParam(defaultValue = "PDF") BadgeExportFormat format) {
+
+        return buildExportResponse(badgeExportService.exportLaboratoryMemberBadges(laboratoryId, format),
+                "laboratory_" + laboratoryId + "_badges", format);
+    }
+
+    /**
+     * Endpoint to export the badges of every pharmacy representative.
+     *
+     * @param format PDF for one multi-page PDF (default) or ZIP for one PDF per representative
+     * @return a ResponseEntity with status 200 (OK) streaming the badges
+     */
+    @GetMapping("/pharmacy-representatives")
+    public ResponseEntity<StreamingResponseBody> exportPharmacyRepresentativeBadges(
+            @RequestParam(defaultValue = "PDF") BadgeExportFormat format) {
+
+        return buildExportResponse(badgeExportService.exportPharmacyRepresentativeBadges(format),
+                "pharmacy_representatives_badges", format);
+    }
+
+    /**
+     * Endpoint to export the badges of a list of participants.
+     *
+     * @param participantIds the IDs of the pharmacy representatives or laboratory members
+     * @param format         PDF for one multi-page PDF (default) or ZIP for one PDF per participant
+     * @return a ResponseEntity with status 200 (OK) streaming the badges
+     */
+    @PostMapping
+    public ResponseEntity<StreamingResponseBody> exportBadges(
+            @RequestBody List<Long> participantIds, @RequestParam(defaultValue = "PDF") BadgeExportFormat format) {
+
+        return buildExportResponse(badgeExportService.exportBadges(participantIds, format), "badges", format);
+    }
+
+    /**
+     * Endpoint to queue the rendering of the badges of a list of participants in the background.
+     *
+     * @param participantIds the IDs of the pharmacy representatives or laboratory members
+     * @param format         PDF for one multi-page PDF (default) or ZIP for one PDF per participant
+     * @return a ResponseEntity with status 202 (Accepted), the job and its URI to poll
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<BadgeJobDto> submitBadgeJob(
+            @RequestBody List<Long> participantIds, @RequestParam(defaultValue = "PDF") BadgeExportFormat format) {
+
+        BadgeJobDto job = badgeJobService.submit(participantIds, format);
+
+        URI uri = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{jobId}")
+                .buildAndExpand(job.id())
+                .toUri();
+
+        return ResponseEntity.accepted().location(uri).body(job);
+    }
+
+    /**
+     * Endpoint to poll the state of a badge job.
+     *
+     * @param jobId the ID returned when the job was queued
+     * @return a ResponseEntity with status 200 (OK) and the job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<BadgeJobDto> getBadgeJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(badgeJobService.getJob(jobId));
+    }
+
+    /**
+     * Endpoint to download the badges rendered by a completed job.
+     *
+     * @param jobId the ID returned when the job was queued
+     * @return a ResponseEntity with status 200 (OK) streaming the badges; 409 (Conflict) while the job is queued or
+     * running, and 410 (Gone) with the reason if it failed
+     */
+    @GetMapping("/jobs/{jobId}/download")
+    public ResponseEntity<StreamingResponseBody> downloadBadgeJob(@PathVariable String jobId) {
+        BadgeJobDto job = badgeJobService.getJob(jobId);
+
+        return buildExportResponse(badgeJobService.download(jobId), "badges_" + jobId, job.format());
+    }
+
+    private ResponseEntity<StreamingResponseBody> buildExportResponse(StreamingResponseBody body, String filename,
+                                                                      BadgeExportFormat format) {
+        HttpHeaders headers = new HttpHeaders();
+
+        if (format == BadgeExportFormat.ZIP) {
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.set("Content-Disposition", "attachment; filename=" + filename + ".zip");
+        } else {
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.set("Content-Disposition", "attachment; filename=" + filename + ".pdf");
+        }
+
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+}
@@ -2,11 +2,18 @@ package com.augefarma.controle_feira.controllers.exception;
 
 import com.augefarma.controle_feira.dtos.exception.CustomErrorDto;
 import com.augefarma.controle_feira.dtos.exception.ValidationErrorDto;
+import com.augefarma.controle_feira.exceptions.BadgeJobFailedException;
+import com.augefarma.controle_feira.exceptions.BadgeJobNotReadyException;
+import com.augefarma.controle_feira.exceptions.BadgeJobQueueFullException;
 import com.augefarma.controle_feira.exceptions.EntityAlreadyPresentException;
 import com.augefarma.controle_feira.exceptions.EntityNotPresentException;
+import com.augefarma.controle_feira.exceptions.InvalidBadgeTokenException;
 import com.augefarma.controle_feira.exceptions.InvalidCredentialsException;
 import com.augefarma.controle_feira.exceptions.JWTGenerationException;
+import com.augefarma.controle_feira.exceptions.PayloadTooLargeException;
+import com.augefarma.controle_feira.exceptions.QRCodeDecoderBusyException;
 import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
+import com.augefarma.controle_feira.exceptions.UnreadableFrameException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
@@ -160,6 +167,84 @@ public class ExceptionHandlerController  extends ResponseEntityExceptionHandler
         return ResponseEntity.status(status).body(customErrorDto);
     }
 
+    @ExceptionHandler(BadgeJobQueueFullException.class)
+    public ResponseEntity<CustomErrorDto> badgeJobQueueFull(BadgeJobQueueFullException exception,
+                                                            HttpServletRequest request) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, "30").body(customErrorDto);
+    }
+
+    @ExceptionHandler(BadgeJobNotReadyException.class)
+    public ResponseEntity<CustomErrorDto> badgeJobNotReady(BadgeJobNotReadyException exception,
+                                                           HttpServletRequest request) {
+        HttpStatus status = HttpStatus.CONFLICT;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).body(customErrorDto);
+    }
+
+    @ExceptionHandler(BadgeJobFailedException.class)
+    public ResponseEntity<CustomErrorDto> badgeJobFailed(BadgeJobFailedException exception,
+                                                         HttpServletRequest request) {
+        // The result will never exist, unlike a job that is still running
+        HttpStatus status = HttpStatus.GONE;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).body(customErrorDto);
+    }
+
+    @ExceptionHandler(InvalidBadgeTokenException.class)
+    public ResponseEntity<CustomErrorDto> invalidBadgeToken(InvalidBadgeTokenException exception,
+                                                            HttpServletRequest request) {
+        HttpStatus status = HttpStatus.FORBIDDEN;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).body(customErrorDto);
+    }
+
+    @ExceptionHandler(QRCodeDecoderBusyException.class)
+    public ResponseEntity<CustomErrorDto> qrCodeDecoderBusy(QRCodeDecoderBusyException exception,
+                                                            HttpServletRequest request) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, "1").body(customErrorDto);
+    }
+
+    @ExceptionHandler(UnreadableFrameException.class)
+    public ResponseEntity<CustomErrorDto> unreadableFrame(UnreadableFrameException exception,
+                                                          HttpServletRequest request) {
+        HttpStatus status = HttpStatus.UNPROCESSABLE_ENTITY;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).body(customErrorDto);
+    }
+
+    @ExceptionHandler(PayloadTooLargeException.class)
+    public ResponseEntity<CustomErrorDto> payloadTooLarge(PayloadTooLargeException exception,
+                                                          HttpServletRequest request) {
+        HttpStatus status = HttpStatus.PAYLOAD_TOO_LARGE;
+
+        CustomErrorDto customErrorDto = new CustomErrorDto(Instant.now(),
+                status.value(), exception.getMessage(), request.getRequestURI());
+
+        return ResponseEntity.status(status).body(customErrorDto);
+    }
+
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<CustomErrorDto> handleDataIntegrityViolation(DataIntegrityViolationException exception, HttpServletRequest request) {
         HttpStatus status = HttpStatus.CONFLICT;
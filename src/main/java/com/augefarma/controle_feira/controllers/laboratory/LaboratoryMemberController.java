@@ -1,14 +1,18 @@
 package com.augefarma.controle_feira.controllers.laboratory;
 
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
 import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberDto;
 import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
 import com.augefarma.controle_feira.services.laboratory.LaboratoryMemberService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import java.net.URI;
 import java.util.List;
@@ -70,22 +74,32 @@ public class LaboratoryMemberController {
      * Endpoint to generate a badge for a laboratory member.
      *
      * @param laboratoryMemberId the ID of the laboratory member for whom to generate the badge
-     * @return a ResponseEntity with status 200 (OK), headers, and the badge PDF as a byte array
+     * @param request the request, checked for an If-None-Match matching the badge
+     * @return a ResponseEntity with status 200 (OK), headers, and the badge PDF streamed to the response, or null
+     *         once the response was set to 304 (Not Modified) because the client's copy is still current
      */
     @GetMapping("/{laboratoryMemberId}/badge")
-    public ResponseEntity<byte[]> generateLaboratoryMemberBadge(
-            @PathVariable Long laboratoryMemberId) {
+    public ResponseEntity<StreamingResponseBody> generateLaboratoryMemberBadge(
+            @PathVariable Long laboratoryMemberId, WebRequest request) {
 
         // Generate the badge for the laboratory member
-        byte[] badge = laboratoryMemberService.generateLaboratoryMemberBadge(laboratoryMemberId);
+        CachedBadgeDto badge = laboratoryMemberService.generateLaboratoryMemberBadge(laboratoryMemberId);
+
+        // Sets the ETag and, if it matches the client's copy, status 304 (Not Modified) without rendering anything
+        if (request.checkNotModified(badge.hash())) {
+            return null;
+        }
 
         // Create HTTP headers for content type and attachment disposition
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.set("Content-Disposition", "attachment; filename=laboratory_" + laboratoryMemberId + "_badge.pdf");
 
-        // Return a ResponseEntity with status 200 (OK), headers, and the badge byte array
-        return ResponseEntity.ok().headers(headers).body(badge);
+        // Clients must revalidate, so a changed participant never keeps an outdated badge
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        // Return a ResponseEntity with status 200 (OK) and headers; the badge is written chunked as it is rendered
+        return ResponseEntity.ok().headers(headers).body(badge.body());
     }
 
     @GetMapping("/search-by-name-or-cpf")
@@ -0,0 +1,31 @@
+package com.augefarma.controle_feira.controllers.participant;
+
+import com.augefarma.controle_feira.dtos.participant.ParticipantCacheStatisticsDto;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/participant-cache")
+public class ParticipantCacheController {
+
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService;
+
+    @Autowired
+    public ParticipantCacheController(ParticipantSnapshotCacheService participantSnapshotCacheService) {
+        this.participantSnapshotCacheService = participantSnapshotCacheService;
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the participant snapshot cache.
+     *
+     * @return a ResponseEntity containing the cache statistics
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<ParticipantCacheStatisticsDto> getStatistics() {
+        return ResponseEntity.ok(participantSnapshotCacheService.getStatistics());
+    }
+}
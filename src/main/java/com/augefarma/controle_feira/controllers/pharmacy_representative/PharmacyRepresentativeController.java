@@ -1,14 +1,18 @@
 package com.augefarma.controle_feira.controllers.pharmacy_representative;
 
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
 import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeDto;
 import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
 import com.augefarma.controle_feira.services.pharmacy_representative.PharmacyRepresentativeService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import java.net.URI;
 import java.util.List;
@@ -70,14 +74,22 @@ public class PharmacyRepresentativeController {
      * Endpoint to generate a badge for a pharmacy representative.
      *
      * @param pharmacyRepresentativeId the ID of the pharmacy representative for whom to generate the badge
-     * @return a ResponseEntity with status 200 (OK), headers, and the badge PDF as a byte array
+     * @param request the request, checked for an If-None-Match matching the badge
+     * @return a ResponseEntity with status 200 (OK), headers, and the badge PDF streamed to the response, or null
+     *         once the response was set to 304 (Not Modified) because the client's copy is still current
      */
     @GetMapping("/{pharmacyRepresentativeId}/badge")
-    public ResponseEntity<byte[]> generatePharmacyRepresentativeBadge(
-            @PathVariable Long pharmacyRepresentativeId) {
+    public ResponseEntity<StreamingResponseBody> generatePharmacyRepresentativeBadge(
+            @PathVariable Long pharmacyRepresentativeId, WebRequest request) {
 
         // Generate the badge for the pharmacy representative
-        byte[] badge = pharmacyRepresentativeService.generatePharmacyRepresentativeBadge(pharmacyRepresentativeId);
+        CachedBadgeDto badge = pharmacyRepresentativeService
+                .generatePharmacyRepresentativeBadge(pharmacyRepresentativeId);
+
+        // Sets the ETag and, if it matches the client's copy, status 304 (Not Modified) without rendering anything
+        if (request.checkNotModified(badge.hash())) {
+            return null;
+        }
 
         // Create HTTP headers for content type and attachment disposition
         HttpHeaders headers = new HttpHeaders();
@@ -85,8 +97,11 @@ public class PharmacyRepresentativeController {
         headers.set("Content-Disposition", "attachment; filename=pharmacy_representative_"
                 + pharmacyRepresentativeId + "_badge.pdf");
 
-        // Return a ResponseEntity with status 200 (OK), headers, and the badge byte array
-        return ResponseEntity.ok().headers(headers).body(badge);
+        // Clients must revalidate, so a changed participant never keeps an outdated badge
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        // Return a ResponseEntity with status 200 (OK) and headers; the badge is written chunked as it is rendered
+        return ResponseEntity.ok().headers(headers).body(badge.body());
     }
 
     /**
@@ -0,0 +1,32 @@
+package com.augefarma.controle_feira.controllers.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.HeadcountDto;
+import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/headcount")
+public class HeadcountController {
+
+    private final RealTimeUpdateService realTimeUpdateService;
+
+    @Autowired
+    public HeadcountController(RealTimeUpdateService realTimeUpdateService) {
+        this.realTimeUpdateService = realTimeUpdateService;
+    }
+
+    /**
+     * Returns how many people are inside, per segment and per laboratory, with the recent arrivals per minute and
+     * per hour.
+     *
+     * @return a ResponseEntity containing the headcount
+     */
+    @GetMapping
+    public ResponseEntity<HeadcountDto> getHeadcount() {
+        return ResponseEntity.ok(realTimeUpdateService.getHeadcount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.augefarma.controle_feira.controllers.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.OutboundMetricsDto;
+import com.augefarma.controle_feira.dtos.real_time.RealTimeMetricsDto;
+import com.augefarma.controle_feira.services.socket.PresenceBroadcastScheduler;
+import com.augefarma.controle_feira.services.socket.SlowSessionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/realtime-metrics")
+public class RealTimeMetricsController {
+
+    private final PresenceBroadcastScheduler presenceBroadcastScheduler;
+    private final SlowSessionInterceptor slowSessionInterceptor;
+
+    @Autowired
+    public RealTimeMetricsController(PresenceBroadcastScheduler presenceBroadcastScheduler,
+                                     SlowSessionInterceptor slowSessionInterceptor) {
+        this.presenceBroadcastScheduler = presenceBroadcastScheduler;
+        this.slowSessionInterceptor = slowSessionInterceptor;
+    }
+
+    /**
+     * Returns how many presence updates were merged into each realtime broadcast.
+     *
+     * @return a ResponseEntity containing the broadcast metrics
+     */
+    @GetMapping
+    public ResponseEntity<RealTimeMetricsDto> getMetrics() {
+        return ResponseEntity.ok(presenceBroadcastScheduler.getMetrics());
+    }
+
+    /**
+     * Returns how many messages to WebSocket clients were dropped or sent late, and how many sessions are falling
+     * behind.
+     *
+     * @return a ResponseEntity containing the outbound metrics
+     */
+    @GetMapping("/outbound")
+    public ResponseEntity<OutboundMetricsDto> getOutboundMetrics() {
+        return ResponseEntity.ok(slowSessionInterceptor.getMetrics());
+    }
+}
@@ -1,55 +1,142 @@
 package com.augefarma.controle_feira.controllers.socket;
 
+import com.augefarma.controle_feira.dtos.event.HeadcountUpdateEventDto;
 import com.augefarma.controle_feira.dtos.event.ListUpdateEventDto;
-import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.HeadcountDto;
+import com.augefarma.controle_feira.dtos.real_time.SerializedPayloadDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.PayloadEncoding;
+import com.augefarma.controle_feira.services.socket.PresenceSnapshotCache;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
 public class RealTimeUpdateController {
 
     private final RealTimeUpdateService realTimeUpdateService;
+    private final PresenceSnapshotCache presenceSnapshotCache;
     private final SimpMessagingTemplate messagingTemplate;
 
     /**
      * Constructor for RealTimeUpdateController.
      *
      * @param realTimeUpdateService service for handling real-time updates
+     * @param presenceSnapshotCache cache of the serialized presence snapshots
      * @param messagingTemplate     template for sending messages to WebSocket clients
      */
     @Autowired
     public RealTimeUpdateController(@Lazy RealTimeUpdateService realTimeUpdateService,
+                                    PresenceSnapshotCache presenceSnapshotCache,
                                     SimpMessagingTemplate messagingTemplate) {
         this.realTimeUpdateService = realTimeUpdateService;
+        this.presenceSnapshotCache = presenceSnapshotCache;
         this.messagingTemplate = messagingTemplate;
     }
 
     /**
-     * Handles requests for initial data and sends it to WebSocket clients.
+     * Handles requests for initial data and sends it to WebSocket clients. The snapshot goes to /topic/realtime like
+     * the deltas that follow it; clients tell them apart by the snapshot's "version" and the delta's "fromSequence".
      *
-     * @return an EntitiesListResponseDto containing the initial data for clients and laboratories
+     * @return the JSON of an EntitiesListResponseDto containing the present participants and the version they
+     * reflect, which is the sequence the client continues from
      */
     @MessageMapping("/get-initial-data")
     @SendTo("/topic/realtime")
-    public EntitiesListResponseDto getInitialData() {
-        // Retrieves the initial data from the service and sends it to WebSocket clients
-        return realTimeUpdateService.getEntitiesListResponseDto();
+    public SerializedPayloadDto getInitialData() {
+        // Retrieves the initial data, serialized once per state version, and sends it to WebSocket clients
+        return presenceSnapshotCache.getSerializedSnapshot();
     }
 
     /**
-     * Handles list update events and sends the updated list to WebSocket clients.
+     * Sends a fresh snapshot only to the subscribing client. Clients subscribe to /app/realtime/snapshot when they
+     * detect a gap in the delta sequence.
      *
-     * @param event the event containing the updated list of entities
+     * @param encoding the "encoding" header of the subscription: json (default), columnar or cbor
+     * @return an EntitiesListResponseDto containing the present participants and their version, in that encoding
+     */
+    @SubscribeMapping("/realtime/snapshot")
+    public SerializedPayloadDto resync(@Header(name = "encoding", required = false) String encoding) {
+        return presenceSnapshotCache.getSerializedSnapshot(PayloadEncoding.fromHeader(encoding));
+    }
+
+    /**
+     * Sends a snapshot of the participants who entered through a segment to the subscribing client, to bootstrap or
+     * resync /topic/realtime/segment/{segment}/delta.
+     *
+     * @param segment  the event segment to show
+     * @param encoding the "encoding" header of the subscription: json (default), columnar or cbor
+     * @return an EntitiesListResponseDto containing those participants and their version, in that encoding
+     */
+    @SubscribeMapping("/realtime/snapshot/segment/{segment}")
+    public SerializedPayloadDto getSegmentSnapshot(@DestinationVariable EventSegment segment,
+                                                   @Header(name = "encoding", required = false) String encoding) {
+        return presenceSnapshotCache.getSerializedSegmentSnapshot(segment, PayloadEncoding.fromHeader(encoding));
+    }
+
+    /**
+     * Sends a snapshot of the present members of a laboratory to the subscribing client, to bootstrap or resync
+     * /topic/realtime/laboratory/{laboratoryId}/delta.
+     *
+     * @param laboratoryId the ID of the laboratory to show
+     * @param encoding     the "encoding" header of the subscription: json (default), columnar or cbor
+     * @return an EntitiesListResponseDto containing its present members and their version, in that encoding
+     */
+    @SubscribeMapping("/realtime/snapshot/laboratory/{laboratoryId}")
+    public SerializedPayloadDto getLaboratorySnapshot(@DestinationVariable Long laboratoryId,
+                                                      @Header(name = "encoding", required = false) String encoding) {
+        return presenceSnapshotCache.getSerializedLaboratorySnapshot(laboratoryId,
+                PayloadEncoding.fromHeader(encoding));
+    }
+
+    /**
+     * Handles list update events and sends the changes to the WebSocket topic of their scope.
+     *
+     * @param event the event containing the presence delta
      */
     @EventListener
     public void handleListUpdateEvent(ListUpdateEventDto event) {
-        // Sends the updated list of entities to WebSocket clients
-        messagingTemplate.convertAndSend("/topic/realtime", event.getUpdatedList());
+        // Sends only what changed, tagged with its sequence numbers
+        messagingTemplate.convertAndSend(resolveDeltaDestination(event), event.getDelta());
+    }
+
+    /**
+     * Sends the current headcount to the subscribing client; later values arrive on /topic/headcount.
+     *
+     * @return a HeadcountDto with the occupancy counters
+     */
+    @SubscribeMapping("/headcount")
+    public HeadcountDto getHeadcount() {
+        return realTimeUpdateService.getHeadcount();
+    }
+
+    /**
+     * Handles headcount update events and sends the new counters to WebSocket clients.
+     *
+     * @param event the event containing the headcount
+     */
+    @EventListener
+    public void handleHeadcountUpdateEvent(HeadcountUpdateEventDto event) {
+        messagingTemplate.convertAndSend("/topic/headcount", event.getHeadcount());
+    }
+
+    private String resolveDeltaDestination(ListUpdateEventDto event) {
+        if (event.getSegment() != null) {
+            return "/topic/realtime/segment/" + event.getSegment() + "/delta";
+        }
+
+        if (event.getLaboratoryId() != null) {
+            return "/topic/realtime/laboratory/" + event.getLaboratoryId() + "/delta";
+        }
+
+        return "/topic/realtime";
     }
 }
@@ -1,4 +1,7 @@
 package com.augefarma.controle_feira.dtos.authentication;
 
+/**
+ * @param cpf the participant's CPF, or the content of a scanned badge QR code, which may be a signed token instead
+ */
 public record CpfEntityDto(String cpf) {
 }
@@ -0,0 +1,10 @@
+package com.augefarma.controle_feira.dtos.authentication.validate_entry_exit;
+
+import java.time.LocalDateTime;
+
+public record DailyPresenceDto(int entryCount, LocalDateTime firstCheckinTime) {
+
+    public boolean isFirstEntryOfDay() {
+        return entryCount == 1;
+    }
+}
@@ -0,0 +1,10 @@
+package com.augefarma.controle_feira.dtos.authentication.validate_entry_exit;
+
+import com.augefarma.controle_feira.enums.EventSegment;
+import java.time.LocalDateTime;
+
+/**
+ * @param cpf the content of the scanned badge QR code: the participant's CPF, or the signed token of newer badges
+ */
+public record ScanBatchItemDto(String cpf, EventSegment segment, LocalDateTime clientTimestamp) {
+}
@@ -0,0 +1,4 @@
+package com.augefarma.controle_feira.dtos.authentication.validate_entry_exit;
+
+public record ScanBatchItemResultDto(int index, String cpf, boolean success, String message) {
+}
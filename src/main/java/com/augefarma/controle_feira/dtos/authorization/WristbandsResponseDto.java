@@ -1,6 +1,6 @@
 package com.augefarma.controle_feira.dtos.authorization;
 
-import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -20,19 +20,19 @@ public class WristbandsResponseDto {
 
     private String corporateReason;
 
-    public WristbandsResponseDto(ParticipantEntity participant, List<String> checkInsFair) {
-        id = participant.getId();
-        name = participant.getName();
-        cpf = participant.getCpf();
+    public WristbandsResponseDto(ParticipantSnapshotDto participant, List<String> checkInsFair) {
+        id = participant.id();
+        name = participant.name();
+        cpf = participant.cpf();
         this.checkInsFair = checkInsFair;
-        corporateReason = participant.getSpecificInfoForWristbandResponse();
+        corporateReason = participant.corporateReason();
     }
 
-    public WristbandsResponseDto(ParticipantEntity participant) {
-        id = participant.getId();
-        name = participant.getName();
-        cpf = participant.getCpf();
+    public WristbandsResponseDto(ParticipantSnapshotDto participant) {
+        id = participant.id();
+        name = participant.name();
+        cpf = participant.cpf();
         this.checkInsFair = null;
-        corporateReason = participant.getSpecificInfoForWristbandResponse();
+        corporateReason = participant.corporateReason();
     }
 }
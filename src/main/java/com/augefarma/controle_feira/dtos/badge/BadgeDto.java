@@ -0,0 +1,20 @@
+package com.augefarma.controle_feira.dtos.badge;
+
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+
+/**
+ * What is printed on a participant's badge.
+ *
+ * @param type            selects the badge template variant
+ * @param laboratoryId    only set for laboratory members
+ * @param corporateReason the pharmacy representative's corporate reason, or the laboratory's for laboratory members
+ */
+public record BadgeDto(Long participantId, ParticipantType type, Long laboratoryId, String fullName,
+                       String corporateReason, String cpf) {
+
+    public BadgeDto(ParticipantSnapshotDto participant) {
+        this(participant.id(), participant.type(), participant.laboratoryId(), participant.name(),
+                participant.corporateReason(), participant.cpf());
+    }
+}
@@ -0,0 +1,16 @@
+package com.augefarma.controle_feira.dtos.badge;
+
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.enums.BadgeJobStatus;
+import java.time.LocalDateTime;
+
+/**
+ * Current state of an asynchronous badge job.
+ *
+ * @param participants the number of distinct participant IDs submitted
+ * @param finishedAt   only set once the job completed or failed
+ * @param error        only set if the job failed
+ */
+public record BadgeJobDto(String id, BadgeJobStatus status, BadgeExportFormat format, int participants,
+                          LocalDateTime submittedAt, LocalDateTime finishedAt, String error) {
+}
@@ -0,0 +1,13 @@
+package com.augefarma.controle_feira.dtos.badge;
+
+import com.augefarma.controle_feira.enums.ParticipantType;
+import java.time.LocalDate;
+
+/**
+ * Who a badge was issued to, as carried by the signed token in its QR code.
+ *
+ * @param laboratoryId only set for laboratory members
+ * @param issuedOn     the day the badge was rendered
+ */
+public record BadgeTokenDto(Long participantId, ParticipantType type, Long laboratoryId, LocalDate issuedOn) {
+}
@@ -0,0 +1,12 @@
+package com.augefarma.controle_feira.dtos.badge;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * A badge PDF ready to be written to a response, together with the hash of everything it is rendered from.
+ *
+ * @param hash the content hash of the badge inputs, also used as its ETag
+ * @param body writes the PDF, rendering it first if it is not cached
+ */
+public record CachedBadgeDto(String hash, StreamingResponseBody body) {
+}
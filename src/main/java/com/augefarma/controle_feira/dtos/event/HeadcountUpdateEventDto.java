@@ -0,0 +1,16 @@
+package com.augefarma.controle_feira.dtos.event;
+
+import com.augefarma.controle_feira.dtos.real_time.HeadcountDto;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class HeadcountUpdateEventDto extends ApplicationEvent {
+
+    private final HeadcountDto headcount;
+
+    public HeadcountUpdateEventDto(Object source, HeadcountDto headcount) {
+        super(source);
+        this.headcount = headcount;
+    }
+}
@@ -1,16 +1,27 @@
 package com.augefarma.controle_feira.dtos.event;
 
-import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceDeltaDto;
+import com.augefarma.controle_feira.enums.EventSegment;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
 @Getter
 public class ListUpdateEventDto extends ApplicationEvent{
 
-    private final EntitiesListResponseDto updatedList;
+    private final PresenceDeltaDto delta;
 
-    public ListUpdateEventDto(Object source, EntitiesListResponseDto updatedList) {
+    // The scope of the delta; both null for the delta covering everyone
+    private final EventSegment segment;
+    private final Long laboratoryId;
+
+    public ListUpdateEventDto(Object source, PresenceDeltaDto delta) {
+        this(source, delta, null, null);
+    }
+
+    public ListUpdateEventDto(Object source, PresenceDeltaDto delta, EventSegment segment, Long laboratoryId) {
         super(source);
-        this.updatedList = updatedList;
+        this.delta = delta;
+        this.segment = segment;
+        this.laboratoryId = laboratoryId;
     }
 }
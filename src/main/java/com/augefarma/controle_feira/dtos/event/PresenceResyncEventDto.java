@@ -0,0 +1,19 @@
+package com.augefarma.controle_feira.dtos.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when this instance may have missed presence changes made by the others, so the registry is recomputed
+ * from the database.
+ */
+@Getter
+public class PresenceResyncEventDto extends ApplicationEvent {
+
+    private final String reason;
+
+    public PresenceResyncEventDto(Object source, String reason) {
+        super(source);
+        this.reason = reason;
+    }
+}
@@ -1,5 +1,6 @@
 package com.augefarma.controle_feira.dtos.laboratory;
 
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.entities.laboratory.LaboratoryMemberEntity;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -24,4 +25,11 @@ public class LaboratoryMemberResponseDto {
         cpf = laboratoryMember.getCpf();
         laboratory = laboratoryMember.getLaboratory().getCorporateReason();
     }
+
+    public LaboratoryMemberResponseDto(ParticipantSnapshotDto participant) {
+        id = participant.id();
+        name = participant.name();
+        cpf = participant.cpf();
+        laboratory = participant.corporateReason();
+    }
 }
@@ -0,0 +1,4 @@
+package com.augefarma.controle_feira.dtos.participant;
+
+public record ParticipantCacheStatisticsDto(long hits, long misses, long evictions, int size, int maxSize) {
+}
@@ -0,0 +1,47 @@
+package com.augefarma.controle_feira.dtos.participant;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.interfaces.RealTimePresenceRegistrable;
+import com.augefarma.controle_feira.repositories.participant.ParticipantSnapshotProjection;
+import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
+
+/**
+ * Immutable view of a participant with everything a gate scan needs, so scans don't have to load the
+ * participant entity hierarchy.
+ *
+ * @param corporateReason the pharmacy representative's corporate reason, or the laboratory's for laboratory members
+ * @param cnpj            only set for pharmacy representatives
+ * @param laboratoryId    only set for laboratory members
+ */
+public record ParticipantSnapshotDto(Long id, String name, String cpf, ParticipantType type, String cnpj,
+                                     String corporateReason, Long laboratoryId) implements RealTimePresenceRegistrable {
+
+    public ParticipantSnapshotDto(ParticipantSnapshotProjection projection) {
+        this(projection.getId(), projection.getName(), projection.getCpf(),
+                ParticipantType.valueOf(projection.getType()), projection.getCnpj(),
+                projection.getCorporateReason(), projection.getLaboratoryId());
+    }
+
+    @Override
+    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService, EventSegment segment) {
+        if (type == ParticipantType.PHARMACY_REPRESENTATIVE) {
+            realTimeUpdateService.addPharmacyRepresentativePresent(new PharmacyRepresentativeResponseDto(this),
+                    segment);
+        } else {
+            realTimeUpdateService.addLaboratoryMemberPresent(new LaboratoryMemberResponseDto(this), laboratoryId,
+                    segment);
+        }
+    }
+
+    @Override
+    public void removeToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService) {
+        if (type == ParticipantType.PHARMACY_REPRESENTATIVE) {
+            realTimeUpdateService.removePharmacyRepresentativePresent(new PharmacyRepresentativeResponseDto(this));
+        } else {
+            realTimeUpdateService.removeLaboratoryMemberPresent(new LaboratoryMemberResponseDto(this));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.augefarma.controle_feira.dtos.pharmacy_representative;
 
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.entities.pharmacy_representative.PharmacyRepresentativeEntity;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -27,4 +28,12 @@ public class PharmacyRepresentativeResponseDto {
         cnpj = pharmacyRepresentative.getCnpj();
         corporateReason = pharmacyRepresentative.getCorporateReason();
     }
+
+    public PharmacyRepresentativeResponseDto(ParticipantSnapshotDto participant) {
+        id = participant.id();
+        name = participant.name();
+        cpf = participant.cpf();
+        cnpj = participant.cnpj();
+        corporateReason = participant.corporateReason();
+    }
 }
@@ -0,0 +1,13 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChange;
+
+/**
+ * A presence change published to the other application instances.
+ *
+ * @param nodeId   the instance that made the change, so it can ignore its own notifications
+ * @param sequence numbers the changes of each instance consecutively from 1, so receivers can drop duplicates and
+ *                 tell when they missed one
+ */
+public record ClusterPresenceMessageDto(String nodeId, long sequence, PresenceChange change) {
+}
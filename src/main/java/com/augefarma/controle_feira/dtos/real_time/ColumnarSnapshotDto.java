@@ -0,0 +1,58 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An EntitiesListResponseDto laid out by column, so field names appear once per snapshot instead of once per
+ * participant. Laboratory names are interned: each member carries the index of its laboratory in
+ * {@code laboratories}.
+ */
+public record ColumnarSnapshotDto(long version, PharmacyRepresentativeColumns pharmacyRepresentatives,
+                                  LaboratoryMemberColumns laboratoryMembers, List<String> laboratories) {
+
+    public static ColumnarSnapshotDto from(EntitiesListResponseDto snapshot) {
+        int pharmacyRepresentativeCount = snapshot.getPharmacyRepresentatives().size();
+        PharmacyRepresentativeColumns pharmacyRepresentatives = new PharmacyRepresentativeColumns(
+                new ArrayList<>(pharmacyRepresentativeCount), new ArrayList<>(pharmacyRepresentativeCount),
+                new ArrayList<>(pharmacyRepresentativeCount), new ArrayList<>(pharmacyRepresentativeCount),
+                new ArrayList<>(pharmacyRepresentativeCount));
+
+        for (PharmacyRepresentativeResponseDto pharmacyRepresentative : snapshot.getPharmacyRepresentatives()) {
+            pharmacyRepresentatives.ids().add(pharmacyRepresentative.getId());
+            pharmacyRepresentatives.names().add(pharmacyRepresentative.getName());
+            pharmacyRepresentatives.cpfs().add(pharmacyRepresentative.getCpf());
+            pharmacyRepresentatives.cnpjs().add(pharmacyRepresentative.getCnpj());
+            pharmacyRepresentatives.corporateReasons().add(pharmacyRepresentative.getCorporateReason());
+        }
+
+        int laboratoryMemberCount = snapshot.getLaboratoryMembers().size();
+        LaboratoryMemberColumns laboratoryMembers = new LaboratoryMemberColumns(
+                new ArrayList<>(laboratoryMemberCount), new ArrayList<>(laboratoryMemberCount),
+                new ArrayList<>(laboratoryMemberCount), new ArrayList<>(laboratoryMemberCount));
+        Map<String, Integer> laboratoryIndexes = new LinkedHashMap<>();
+
+        for (LaboratoryMemberResponseDto laboratoryMember : snapshot.getLaboratoryMembers()) {
+            laboratoryMembers.ids().add(laboratoryMember.getId());
+            laboratoryMembers.names().add(laboratoryMember.getName());
+            laboratoryMembers.cpfs().add(laboratoryMember.getCpf());
+            laboratoryMembers.laboratoryIndexes().add(laboratoryIndexes.computeIfAbsent(
+                    laboratoryMember.getLaboratory(), laboratory -> laboratoryIndexes.size()));
+        }
+
+        return new ColumnarSnapshotDto(snapshot.getVersion(), pharmacyRepresentatives, laboratoryMembers,
+                new ArrayList<>(laboratoryIndexes.keySet()));
+    }
+
+    public record PharmacyRepresentativeColumns(List<Long> ids, List<String> names, List<String> cpfs,
+                                                List<String> cnpjs, List<String> corporateReasons) {
+    }
+
+    public record LaboratoryMemberColumns(List<Long> ids, List<String> names, List<String> cpfs,
+                                          List<Integer> laboratoryIndexes) {
+    }
+}
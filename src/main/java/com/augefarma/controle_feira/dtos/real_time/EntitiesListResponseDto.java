@@ -13,26 +13,12 @@ public class EntitiesListResponseDto {
 
     private List<PharmacyRepresentativeResponseDto> pharmacyRepresentatives = new ArrayList<>();
     private List<LaboratoryMemberResponseDto> laboratoryMembers = new ArrayList<>();
+    private long version;
 
     public EntitiesListResponseDto(List<PharmacyRepresentativeResponseDto> pharmacyRepresentatives,
-                                   List<LaboratoryMemberResponseDto> laboratoryMembers) {
+                                   List<LaboratoryMemberResponseDto> laboratoryMembers, long version) {
         this.pharmacyRepresentatives = pharmacyRepresentatives;
         this.laboratoryMembers = laboratoryMembers;
-    }
-
-    public void addPharmacyRepresentative(PharmacyRepresentativeResponseDto pharmacyRepresentative) {
-        pharmacyRepresentatives.add(pharmacyRepresentative);
-    }
-
-    public void removePharmacyRepresentative(PharmacyRepresentativeResponseDto pharmacyRepresentative) {
-        pharmacyRepresentatives.remove(pharmacyRepresentative);
-    }
-
-    public void addLaboratoryMember(LaboratoryMemberResponseDto laboratoryMember) {
-        laboratoryMembers.add(laboratoryMember);
-    }
-
-    public void removeLaboratoryMember(LaboratoryMemberResponseDto laboratoryMember) {
-        laboratoryMembers.remove(laboratoryMember);
+        this.version = version;
     }
 }
@@ -0,0 +1,17 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import com.augefarma.controle_feira.enums.EventSegment;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Occupancy figures for dashboards that don't need the attendee list.
+ *
+ * @param bySegment         participants present per segment they entered through; one participant may count in
+ *                          several segments, so these can add up to more than {@code total}
+ * @param arrivalsPerMinute arrivals in each of the last minutes, oldest first, the current minute last
+ * @param arrivalsPerHour   arrivals in each of the last hours, oldest first, the current hour last
+ */
+public record HeadcountDto(long total, Map<EventSegment, Long> bySegment, long pharmacyRepresentatives,
+                           Map<Long, Long> byLaboratory, List<Long> arrivalsPerMinute, List<Long> arrivalsPerHour) {
+}
@@ -0,0 +1,9 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+/**
+ * @param droppedMessages superseded full-state messages that were never sent
+ * @param lateMessages    messages that waited longer than the late threshold before being sent
+ * @param slowSessions    sessions that fell behind in the last minute
+ */
+public record OutboundMetricsDto(long droppedMessages, long lateMessages, int slowSessions, long lateThresholdMs) {
+}
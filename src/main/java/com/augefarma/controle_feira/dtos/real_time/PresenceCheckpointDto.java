@@ -0,0 +1,17 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The presence registry as written to the checkpoint file.
+ *
+ * @param version              the registry version the participants reflect
+ * @param takenAt              when the checkpoint was taken
+ * @param entryRecordWatermark every entry record above this ID is replayed on restore; null in checkpoints
+ *                             written before watermarks, which replay every record of the day
+ * @param exitRecordWatermark  likewise for exit records
+ */
+public record PresenceCheckpointDto(long version, LocalDateTime takenAt, List<PresentParticipantDto> participants,
+                                    Long entryRecordWatermark, Long exitRecordWatermark) {
+}
@@ -0,0 +1,16 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import java.util.List;
+
+/**
+ * Changes to the presence list from version {@code fromSequence} to {@code sequence}. Applying the removals first and
+ * then the additions is idempotent, so a client at any version from {@code fromSequence} up to {@code sequence} can
+ * apply it; a client below {@code fromSequence} missed a delta and must resync from a new snapshot.
+ */
+public record PresenceDeltaDto(long fromSequence, long sequence,
+                               List<PharmacyRepresentativeResponseDto> addedPharmacyRepresentatives,
+                               List<LaboratoryMemberResponseDto> addedLaboratoryMembers,
+                               List<Long> removedParticipantIds) {
+}
@@ -0,0 +1,30 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A participant in the presence registry; exactly one of {@code pharmacyRepresentative} and
+ * {@code laboratoryMember} is set.
+ *
+ * @param segments     the event segments the participant entered through since arriving
+ * @param laboratoryId only set for laboratory members
+ */
+public record PresentParticipantDto(Long participantId, Set<EventSegment> segments, Long laboratoryId,
+                                    PharmacyRepresentativeResponseDto pharmacyRepresentative,
+                                    LaboratoryMemberResponseDto laboratoryMember) {
+
+    /**
+     * Returns this participant having also entered through the given segment.
+     */
+    public PresentParticipantDto withSegment(EventSegment segment) {
+        Set<EventSegment> extended = EnumSet.of(segment);
+        extended.addAll(segments);
+
+        return new PresentParticipantDto(participantId, Set.copyOf(extended), laboratoryId, pharmacyRepresentative,
+                laboratoryMember);
+    }
+}
@@ -0,0 +1,5 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+public record RealTimeMetricsDto(long tickMs, long broadcasts, long updatesMerged, long maxUpdatesInOneBroadcast,
+                                 double averageUpdatesPerBroadcast) {
+}
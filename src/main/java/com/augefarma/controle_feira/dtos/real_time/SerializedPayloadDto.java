@@ -0,0 +1,19 @@
+package com.augefarma.controle_feira.dtos.real_time;
+
+import lombok.Getter;
+import org.springframework.util.MimeType;
+
+/**
+ * A message payload already encoded, sent as-is instead of being serialized again for every recipient.
+ */
+@Getter
+public class SerializedPayloadDto {
+
+    private final byte[] bytes;
+    private final MimeType contentType;
+
+    public SerializedPayloadDto(byte[] bytes, MimeType contentType) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+    }
+}
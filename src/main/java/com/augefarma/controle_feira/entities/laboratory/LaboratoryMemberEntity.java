@@ -1,6 +1,7 @@
 package com.augefarma.controle_feira.entities.laboratory;
 
 import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import com.augefarma.controle_feira.enums.EventSegment;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -24,8 +25,8 @@ public class LaboratoryMemberEntity extends ParticipantEntity {
     private LaboratoryEntity laboratory;
 
     @Override
-    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService) {
-        realTimeUpdateService.addLaboratoryMemberPresent(this);
+    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService, EventSegment segment) {
+        realTimeUpdateService.addLaboratoryMemberPresent(this, segment);
     }
 
     @Override
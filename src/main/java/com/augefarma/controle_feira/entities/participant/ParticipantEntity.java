@@ -2,11 +2,14 @@ package com.augefarma.controle_feira.entities.participant;
 
 import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
 import com.augefarma.controle_feira.entities.entry_exit.ExitRecordEntity;
+import com.augefarma.controle_feira.enums.EventSegment;
 import com.augefarma.controle_feira.interfaces.RealTimePresenceRegistrable;
+import com.augefarma.controle_feira.services.badge.BadgeCacheInvalidationListener;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -28,6 +31,7 @@ import java.util.List;
 @Setter
 @EqualsAndHashCode
 @Entity
+@EntityListeners(BadgeCacheInvalidationListener.class)
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "participants")
 public class ParticipantEntity implements RealTimePresenceRegistrable {
@@ -52,7 +56,7 @@ public class ParticipantEntity implements RealTimePresenceRegistrable {
     private List<ExitRecordEntity> exitRecords;
 
     @Override
-    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService) {}
+    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService, EventSegment segment) {}
 
     @Override
     public void removeToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService) {}
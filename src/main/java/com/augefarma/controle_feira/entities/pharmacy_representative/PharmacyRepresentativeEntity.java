@@ -1,6 +1,7 @@
 package com.augefarma.controle_feira.entities.pharmacy_representative;
 
 import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import com.augefarma.controle_feira.enums.EventSegment;
 import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
 import com.augefarma.controle_feira.services.authorization.WristbandsService;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
@@ -31,8 +32,8 @@ public class PharmacyRepresentativeEntity extends ParticipantEntity {
     private String corporateReason;
 
     @Override
-    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService) {
-        realTimeUpdateService.addPharmacyRepresentativePresent(this);
+    public void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService, EventSegment segment) {
+        realTimeUpdateService.addPharmacyRepresentativePresent(this, segment);
     }
 
     @Override
@@ -0,0 +1,9 @@
+package com.augefarma.controle_feira.enums;
+
+/**
+ * How a bulk badge export is delivered: one multi-page PDF, or a ZIP with one PDF per participant.
+ */
+public enum BadgeExportFormat {
+    PDF,
+    ZIP
+}
@@ -0,0 +1,11 @@
+package com.augefarma.controle_feira.enums;
+
+/**
+ * Lifecycle of an asynchronous badge job: waiting for a rendering thread, rendering, and finished either way.
+ */
+public enum BadgeJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
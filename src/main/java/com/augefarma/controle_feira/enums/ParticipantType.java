@@ -0,0 +1,6 @@
+package com.augefarma.controle_feira.enums;
+
+public enum ParticipantType {
+    PHARMACY_REPRESENTATIVE,
+    LABORATORY_MEMBER
+}
@@ -0,0 +1,37 @@
+package com.augefarma.controle_feira.enums;
+
+import lombok.Getter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Encodings a realtime client can ask for in the "encoding" header of its subscription.
+ */
+@Getter
+public enum PayloadEncoding {
+    JSON("json", MimeTypeUtils.APPLICATION_JSON),
+    COLUMNAR("columnar", MimeTypeUtils.APPLICATION_JSON),
+    // STOMP only sends binary WebSocket frames for application/octet-stream; any other type goes out as text
+    CBOR("cbor", MimeTypeUtils.APPLICATION_OCTET_STREAM);
+
+    private final String encoding;
+    private final MimeType contentType;
+
+    PayloadEncoding(String encoding, MimeType contentType) {
+        this.encoding = encoding;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Resolves the encoding named in a subscription header, defaulting to JSON when absent or unknown.
+     */
+    public static PayloadEncoding fromHeader(String header) {
+        for (PayloadEncoding payloadEncoding : values()) {
+            if (payloadEncoding.encoding.equalsIgnoreCase(header)) {
+                return payloadEncoding;
+            }
+        }
+
+        return JSON;
+    }
+}
@@ -0,0 +1,9 @@
+package com.augefarma.controle_feira.enums;
+
+/**
+ * How badge QR codes are embedded in the PDF: drawn as vector rectangles, or encoded as a PNG image.
+ */
+public enum QRCodeRendering {
+    VECTOR,
+    PNG
+}
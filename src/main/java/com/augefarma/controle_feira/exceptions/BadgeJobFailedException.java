@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class BadgeJobFailedException extends RuntimeException {
+    public BadgeJobFailedException(String message) {
+        super(message);
+    }
+}
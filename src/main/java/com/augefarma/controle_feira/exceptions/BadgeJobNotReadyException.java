@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class BadgeJobNotReadyException extends RuntimeException {
+    public BadgeJobNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class BadgeJobQueueFullException extends RuntimeException {
+    public BadgeJobQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class InvalidBadgeTokenException extends RuntimeException {
+    public InvalidBadgeTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class QRCodeDecoderBusyException extends RuntimeException {
+    public QRCodeDecoderBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.augefarma.controle_feira.exceptions;
+
+public class UnreadableFrameException extends RuntimeException {
+    public UnreadableFrameException(String message) {
+        super(message);
+    }
+}
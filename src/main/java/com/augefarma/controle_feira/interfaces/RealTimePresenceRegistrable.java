@@ -1,8 +1,9 @@
 package com.augefarma.controle_feira.interfaces;
 
+import com.augefarma.controle_feira.enums.EventSegment;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
 
 public interface RealTimePresenceRegistrable {
-    void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService);
+    void addToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService, EventSegment segment);
     void removeToRealtimeUpdateService(RealTimeUpdateService realTimeUpdateService);
 }
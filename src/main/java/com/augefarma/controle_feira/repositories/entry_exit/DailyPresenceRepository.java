@@ -0,0 +1,137 @@
+package com.augefarma.controle_feira.repositories.entry_exit;
+
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.DailyPresenceDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps one row per participant and day, counting the entries registered on that day through any event segment.
+ * Every write is a single upsert, so concurrent gates agree on which scan was the first entry of the day without
+ * locking each other. This is the source of the "entered today" rule for entries, exits, wristbands and the
+ * presence restore alike.
+ */
+@Repository
+public class DailyPresenceRepository {
+
+    private static final String UPSERT_ENTRY = "INSERT INTO daily_presences "
+            + "(participant_id, presence_date, first_checkin_time, entry_count) VALUES (?, ?, ?, 1) "
+            + "ON CONFLICT (participant_id, presence_date) DO UPDATE "
+            + "SET entry_count = daily_presences.entry_count + 1, "
+            + "first_checkin_time = LEAST(daily_presences.first_checkin_time, EXCLUDED.first_checkin_time) "
+            + "RETURNING entry_count, first_checkin_time";
+
+    private static final String UPSERT_ENTRIES = "INSERT INTO daily_presences "
+            + "(participant_id, presence_date, first_checkin_time, entry_count) "
+            + "SELECT * FROM unnest(?::bigint[], ?::date[], ?::timestamp[], ?::integer[]) "
+            + "ON CONFLICT (participant_id, presence_date) DO UPDATE "
+            + "SET entry_count = daily_presences.entry_count + EXCLUDED.entry_count, "
+            + "first_checkin_time = LEAST(daily_presences.first_checkin_time, EXCLUDED.first_checkin_time) "
+            + "RETURNING participant_id, presence_date, entry_count";
+
+    private static final String EXISTS_ENTRY = "SELECT EXISTS (SELECT 1 FROM daily_presences "
+            + "WHERE participant_id = ? AND presence_date = ?)";
+
+    private static final String FIND_PARTICIPANT_IDS_WITH_ENTRY = "SELECT participant_id FROM daily_presences "
+            + "WHERE presence_date = ? AND participant_id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public DailyPresenceRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Atomically counts one more entry for the participant on the day of the check-in.
+     *
+     * @param participantId the ID of the participant entering
+     * @param checkinTime   the time of the entry
+     * @return the presence of the participant on that day, including this entry
+     */
+    public DailyPresenceDto registerEntry(Long participantId, LocalDateTime checkinTime) {
+        return jdbcTemplate.queryForObject(UPSERT_ENTRY,
+                (resultSet, rowNum) -> new DailyPresenceDto(resultSet.getInt(1),
+                        resultSet.getTimestamp(2).toLocalDateTime()),
+                participantId, Date.valueOf(checkinTime.toLocalDate()), Timestamp.valueOf(checkinTime));
+    }
+
+    /**
+     * Atomically counts several entries in a single statement.
+     *
+     * @param entries the entries to count, at most one element per participant and day
+     * @return how many entries each participant had on that day before these were counted
+     */
+    public Map<PresenceKey, Integer> registerEntries(List<PresenceEntries> entries) {
+        Map<PresenceKey, Integer> previousCounts = new HashMap<>();
+
+        if (entries.isEmpty()) {
+            return previousCounts;
+        }
+
+        Map<PresenceKey, Integer> addedCounts = new HashMap<>();
+        entries.forEach(entry -> addedCounts.put(entry.key(), entry.entryCount()));
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_ENTRIES);
+            statement.setArray(1, connection.createArrayOf("bigint",
+                    entries.stream().map(entry -> entry.key().participantId()).toArray()));
+            statement.setArray(2, connection.createArrayOf("date",
+                    entries.stream().map(entry -> Date.valueOf(entry.key().day())).toArray()));
+            statement.setArray(3, connection.createArrayOf("timestamp",
+                    entries.stream().map(entry -> Timestamp.valueOf(entry.firstCheckinTime())).toArray()));
+            statement.setArray(4, connection.createArrayOf("integer",
+                    entries.stream().map(PresenceEntries::entryCount).toArray()));
+            return statement;
+        }, resultSet -> {
+            PresenceKey key = new PresenceKey(resultSet.getLong(1), resultSet.getDate(2).toLocalDate());
+            previousCounts.put(key, resultSet.getInt(3) - addedCounts.get(key));
+        });
+
+        return previousCounts;
+    }
+
+    /**
+     * Checks whether the participant entered on the day, through any segment. The upserts run in the scan's own
+     * transaction, so unlike the entry records this never lags behind a write-behind journal.
+     */
+    public boolean hasEntry(Long participantId, LocalDate day) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_ENTRY, Boolean.class, participantId,
+                Date.valueOf(day)));
+    }
+
+    /**
+     * Finds which of the participants entered on the day, through any segment.
+     */
+    public Set<Long> findParticipantIdsWithEntry(Collection<Long> participantIds, LocalDate day) {
+        Set<Long> participantIdsWithEntry = new HashSet<>();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_PARTICIPANT_IDS_WITH_ENTRY);
+            statement.setDate(1, Date.valueOf(day));
+            statement.setArray(2, connection.createArrayOf("bigint", participantIds.toArray()));
+            return statement;
+        }, resultSet -> {
+            participantIdsWithEntry.add(resultSet.getLong(1));
+        });
+
+        return participantIdsWithEntry;
+    }
+
+    public record PresenceKey(Long participantId, LocalDate day) {
+    }
+
+    public record PresenceEntries(PresenceKey key, LocalDateTime firstCheckinTime, int entryCount) {
+    }
+}
@@ -2,8 +2,17 @@ package com.augefarma.controle_feira.repositories.entry_exit;
 
 import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface EntryRecordRepository extends JpaRepository<EntryRecordEntity, Long> {
+    List<EntryRecordEntity> findByParticipantIdAndCheckinTimeBetweenOrderByCheckinTimeAsc(Long participantId,
+                                                                                       LocalDateTime start,
+                                                                                       LocalDateTime end);
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM EntryRecordEntity e")
+    long findMaxId();
 }
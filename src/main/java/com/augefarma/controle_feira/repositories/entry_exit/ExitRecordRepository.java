@@ -2,8 +2,23 @@ package com.augefarma.controle_feira.repositories.entry_exit;
 
 import com.augefarma.controle_feira.entities.entry_exit.ExitRecordEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Set;
 
 @Repository
 public interface ExitRecordRepository extends JpaRepository<ExitRecordEntity, Long> {
+    boolean existsByParticipantIdAndCheckoutTimeBetween(Long participantId, LocalDateTime start, LocalDateTime end);
+
+    @Query("SELECT DISTINCT e.participant.id FROM ExitRecordEntity e WHERE e.participant.id IN :participantIds "
+            + "AND e.checkoutTime BETWEEN :start AND :end")
+    Set<Long> findParticipantIdsWithExitBetween(@Param("participantIds") Collection<Long> participantIds,
+                                                @Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end);
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM ExitRecordEntity e")
+    long findMaxId();
 }
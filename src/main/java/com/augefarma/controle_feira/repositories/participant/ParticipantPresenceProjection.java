@@ -0,0 +1,6 @@
+package com.augefarma.controle_feira.repositories.participant;
+
+public interface ParticipantPresenceProjection extends ParticipantSnapshotProjection {
+    // Comma-separated event segments the participant entered through, or null if none was recorded yet
+    String getSegments();
+}
@@ -0,0 +1,6 @@
+package com.augefarma.controle_feira.repositories.participant;
+
+public interface ParticipantPresenceStateProjection extends ParticipantPresenceProjection {
+    // Whether the participant entered on the day and has not left since
+    Boolean getPresent();
+}
@@ -2,11 +2,88 @@ package com.augefarma.controle_feira.repositories.participant;
 
 import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ParticipantRepository extends JpaRepository<ParticipantEntity, Long> {
+
+    // Flattens the JOINED hierarchy into the columns of a ParticipantSnapshotProjection
+    String SNAPSHOT_COLUMNS = "p.id AS id, p.name AS name, p.cpf AS cpf, "
+            + "CASE WHEN pr.id IS NOT NULL THEN 'PHARMACY_REPRESENTATIVE' ELSE 'LABORATORY_MEMBER' END AS type, "
+            + "pr.cnpj AS cnpj, COALESCE(pr.corporate_reason, l.corporate_reason) AS \"corporateReason\", "
+            + "lm.laboratory_id AS \"laboratoryId\" ";
+
+    String SNAPSHOT_JOINS = "LEFT JOIN pharmacy_representatives pr ON pr.id = p.id "
+            + "LEFT JOIN laboratory_members lm ON lm.id = p.id "
+            + "LEFT JOIN laboratories l ON l.id = lm.laboratory_id ";
+
+    String SNAPSHOT_SELECT = "SELECT " + SNAPSHOT_COLUMNS + "FROM participants p " + SNAPSHOT_JOINS;
+
+    // Segments each participant entered through between :start and :end, comma-separated
+    String SEGMENTS_JOIN = "LEFT JOIN (SELECT participant_id, string_agg(DISTINCT event_segment, ',') AS segments "
+            + "FROM entry_records WHERE checkin_time BETWEEN :start AND :end GROUP BY participant_id) e "
+            + "ON e.participant_id = p.id ";
+
+    String NO_EXIT = "NOT EXISTS (SELECT 1 FROM exit_records x WHERE x.participant_id = p.id "
+            + "AND x.checkout_time BETWEEN :start AND :end)";
+
     Optional<ParticipantEntity> findByCpf(String cpf);
+
+    @Query(value = SNAPSHOT_SELECT + " WHERE p.cpf = :cpf", nativeQuery = true)
+    Optional<ParticipantSnapshotProjection> findSnapshotByCpf(@Param("cpf") String cpf);
+
+    @Query(value = SNAPSHOT_SELECT + " WHERE p.id = :id", nativeQuery = true)
+    Optional<ParticipantSnapshotProjection> findSnapshotById(@Param("id") Long id);
+
+    @Query(value = SNAPSHOT_SELECT + " WHERE p.cpf IN (:cpfs)", nativeQuery = true)
+    List<ParticipantSnapshotProjection> findSnapshotsByCpfIn(@Param("cpfs") Collection<String> cpfs);
+
+    @Query(value = SNAPSHOT_SELECT + " ORDER BY p.id LIMIT :limit", nativeQuery = true)
+    List<ParticipantSnapshotProjection> findSnapshots(@Param("limit") int limit);
+
+    // Keyset pages, so exporting thousands of badges never holds them all in memory
+    @Query(value = SNAPSHOT_SELECT + " WHERE lm.laboratory_id = :laboratoryId AND p.id > :afterId "
+            + "ORDER BY p.id LIMIT :limit", nativeQuery = true)
+    List<ParticipantSnapshotProjection> findLaboratoryMemberSnapshotsAfter(@Param("laboratoryId") Long laboratoryId,
+                                                                           @Param("afterId") Long afterId,
+                                                                           @Param("limit") int limit);
+
+    @Query(value = SNAPSHOT_SELECT + " WHERE pr.id IS NOT NULL AND p.id > :afterId ORDER BY p.id LIMIT :limit",
+            nativeQuery = true)
+    List<ParticipantSnapshotProjection> findPharmacyRepresentativeSnapshotsAfter(@Param("afterId") Long afterId,
+                                                                                 @Param("limit") int limit);
+
+    @Query(value = SNAPSHOT_SELECT + " WHERE p.id IN (:ids) ORDER BY p.id", nativeQuery = true)
+    List<ParticipantSnapshotProjection> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Participants with a daily presence on the day, i.e. an entry through any segment, and no exit on it; with the
+    // segments entered, or null if their entry records were not written yet
+    @Query(value = "SELECT " + SNAPSHOT_COLUMNS + ", e.segments AS segments FROM participants p " + SNAPSHOT_JOINS
+            + "JOIN daily_presences d ON d.participant_id = p.id AND d.presence_date = :day " + SEGMENTS_JOIN
+            + "WHERE " + NO_EXIT, nativeQuery = true)
+    Stream<ParticipantPresenceProjection> streamPresentSnapshots(@Param("day") LocalDate day,
+                                                                 @Param("start") LocalDateTime start,
+                                                                 @Param("end") LocalDateTime end);
+
+    // Presence on the day, by the same rule as streamPresentSnapshots, of every participant with an entry or exit
+    // record of the day above the given IDs
+    @Query(value = "SELECT " + SNAPSHOT_COLUMNS + ", e.segments AS segments, "
+            + "(d.participant_id IS NOT NULL AND " + NO_EXIT + ") AS present FROM participants p " + SNAPSHOT_JOINS
+            + "LEFT JOIN daily_presences d ON d.participant_id = p.id AND d.presence_date = :day " + SEGMENTS_JOIN
+            + "WHERE p.id IN (SELECT participant_id FROM entry_records WHERE id > :afterEntryRecordId "
+            + "AND checkin_time BETWEEN :start AND :end "
+            + "UNION SELECT participant_id FROM exit_records WHERE id > :afterExitRecordId "
+            + "AND checkout_time BETWEEN :start AND :end)", nativeQuery = true)
+    Stream<ParticipantPresenceStateProjection> streamPresenceWithRecordsAfter(
+            @Param("day") LocalDate day, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+            @Param("afterEntryRecordId") long afterEntryRecordId, @Param("afterExitRecordId") long afterExitRecordId);
 }
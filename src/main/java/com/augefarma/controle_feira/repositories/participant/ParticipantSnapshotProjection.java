@@ -0,0 +1,11 @@
+package com.augefarma.controle_feira.repositories.participant;
+
+public interface ParticipantSnapshotProjection {
+    Long getId();
+    String getName();
+    String getCpf();
+    String getType();
+    String getCnpj();
+    String getCorporateReason();
+    Long getLaboratoryId();
+}
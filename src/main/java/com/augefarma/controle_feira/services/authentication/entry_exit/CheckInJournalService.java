@@ -0,0 +1,407 @@
+package com.augefarma.controle_feira.services.authentication.entry_exit;
+
+import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
+import com.augefarma.controle_feira.entities.entry_exit.ExitRecordEntity;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
+import com.augefarma.controle_feira.repositories.entry_exit.ExitRecordRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persists entry and exit records, either synchronously through the JPA repositories or, when write-behind is
+ * enabled, by appending them to a bounded in-memory queue that a background flusher drains into JDBC batch inserts.
+ * Records made within a transaction are only queued once it commits, so a rolled back scan never reaches the
+ * database. Records that fail to be written stay queued and are retried with exponential backoff; only a record the
+ * database rejects outright, such as one referencing a participant that no longer exists, is dropped.
+ */
+@Slf4j
+@Service
+public class CheckInJournalService {
+
+    private static final String INSERT_ENTRY_RECORD =
+            "INSERT INTO entry_records (participant_id, checkin_time, event_segment) VALUES (?, ?, ?)";
+
+    private static final String INSERT_EXIT_RECORD =
+            "INSERT INTO exit_records (participant_id, checkout_time, event_segment) VALUES (?, ?, ?)";
+
+    private final EntryRecordRepository entryRecordRepository;
+    private final ExitRecordRepository exitRecordRepository;
+    private final ParticipantRepository participantRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean writeBehindEnabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long maxBackoffMs;
+    private final BlockingQueue<PendingRecord> queue;
+    private final ConcurrentHashMap<PendingKey, AtomicInteger> pendingCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    // Guards the queue against records being offered after shutdown has started draining it
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    // Only touched by the flusher thread, and by shutdown once the flusher has stopped
+    private int consecutiveFailures;
+    private long retryAtNanos;
+
+    @Autowired
+    public CheckInJournalService(EntryRecordRepository entryRecordRepository,
+                                 ExitRecordRepository exitRecordRepository,
+                                 ParticipantRepository participantRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${checkin.journal.write-behind.enabled:false}") boolean writeBehindEnabled,
+                                 @Value("${checkin.journal.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${checkin.journal.batch-size:500}") int batchSize,
+                                 @Value("${checkin.journal.flush-interval-ms:200}") long flushIntervalMs,
+                                 @Value("${checkin.journal.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.entryRecordRepository = entryRecordRepository;
+        this.exitRecordRepository = exitRecordRepository;
+        this.participantRepository = participantRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also used after a caller's transaction has committed, when joining it would write nothing
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.writeBehindEnabled = writeBehindEnabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        if (writeBehindEnabled) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkin-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Records a participant's entry. Without write-behind the record is saved in the caller's transaction;
+     * otherwise it is queued, once that transaction commits, and flushed later, unless the queue is full.
+     *
+     * @param participantId the ID of the participant entering
+     * @param eventSegment  the event segment of the entry
+     * @param checkinTime   the time of the entry
+     */
+    public void recordEntry(Long participantId, EventSegment eventSegment, LocalDateTime checkinTime) {
+        append(new PendingRecord(RecordType.ENTRY, participantId, eventSegment, checkinTime), () -> {
+            EntryRecordEntity entryRecord = new EntryRecordEntity();
+            entryRecord.setCheckinTime(checkinTime);
+            entryRecord.setEventSegment(eventSegment);
+            entryRecord.setParticipant(participantRepository.getReferenceById(participantId));
+
+            entryRecordRepository.save(entryRecord);
+        });
+    }
+
+    /**
+     * Records a participant's exit. Without write-behind the record is saved in the caller's transaction;
+     * otherwise it is queued, once that transaction commits, and flushed later, unless the queue is full.
+     *
+     * @param participantId the ID of the participant leaving
+     * @param eventSegment  the event segment of the exit
+     * @param checkoutTime  the time of the exit
+     */
+    public void recordExit(Long participantId, EventSegment eventSegment, LocalDateTime checkoutTime) {
+        append(new PendingRecord(RecordType.EXIT, participantId, eventSegment, checkoutTime), () -> {
+            ExitRecordEntity exitRecord = new ExitRecordEntity();
+            exitRecord.setCheckoutTime(checkoutTime);
+            exitRecord.setEventSegment(eventSegment);
+            exitRecord.setParticipant(participantRepository.getReferenceById(participantId));
+
+            exitRecordRepository.save(exitRecord);
+        });
+    }
+
+    /**
+     * Checks whether an exit of the participant on the day, through any segment, is still waiting to be flushed.
+     */
+    public boolean hasPendingExit(Long participantId, LocalDate day) {
+        return hasPending(new PendingKey(RecordType.EXIT, participantId, day));
+    }
+
+    /**
+     * Inserts entry records in a single JDBC batch.
+     *
+     * @param records the entry records to insert
+     */
+    void insertEntryRecords(List<PendingRecord> records) {
+        insertBatch(INSERT_ENTRY_RECORD, records);
+    }
+
+    /**
+     * Inserts exit records in a single JDBC batch.
+     *
+     * @param records the exit records to insert
+     */
+    void insertExitRecords(List<PendingRecord> records) {
+        insertBatch(INSERT_EXIT_RECORD, records);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+
+        // From here on new records are saved synchronously, so none is queued after the final drain
+        closeLock.writeLock().lock();
+
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Drain whatever is still queued before the application context goes away, giving up at the first failure
+        while (!queue.isEmpty()) {
+            if (!flush()) {
+                log.error("{} registros de entrada/saída não foram gravados antes do encerramento", queue.size());
+                return;
+            }
+        }
+    }
+
+    private void append(PendingRecord pendingRecord, Runnable saveSynchronously) {
+        if (!writeBehindEnabled) {
+            saveSynchronously.run();
+            return;
+        }
+
+        // Counted as pending from now on, so scans made before the commit already see it
+        markPending(pendingRecord);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (!enqueue(pendingRecord)) {
+                releasePending(pendingRecord);
+                saveSynchronously.run();
+            }
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (!enqueue(pendingRecord)) {
+                    insertAfterCommit(pendingRecord);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    releasePending(pendingRecord);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a record the queue had no room for once the caller's transaction has already committed.
+     */
+    private void insertAfterCommit(PendingRecord pendingRecord) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertGroupedByType(List.of(pendingRecord)));
+        } catch (RuntimeException exception) {
+            log.error("Falha ao gravar o registro {}", pendingRecord, exception);
+        } finally {
+            releasePending(pendingRecord);
+        }
+    }
+
+    /**
+     * Queues a record already counted as pending; the flusher releases it once written.
+     *
+     * @return false if the journal is closed or the queue is full
+     */
+    private boolean enqueue(PendingRecord pendingRecord) {
+        closeLock.readLock().lock();
+
+        try {
+            if (closed || !queue.offer(pendingRecord)) {
+                return false;
+            }
+
+            if (queue.size() >= batchSize) {
+                try {
+                    flusher.execute(this::flushSafely);
+                } catch (RejectedExecutionException exception) {
+                    // The record is already queued; the next scheduled flush or the shutdown drain writes it
+                    log.debug("Gravação antecipada recusada; o registro aguarda a próxima gravação", exception);
+                }
+            }
+
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private void markPending(PendingRecord pendingRecord) {
+        pendingCounts.computeIfAbsent(pendingRecord.key(), key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private boolean hasPending(PendingKey key) {
+        AtomicInteger count = pendingCounts.get(key);
+        return count != null && count.get() > 0;
+    }
+
+    private void releasePending(PendingRecord pendingRecord) {
+        pendingCounts.computeIfPresent(pendingRecord.key(),
+                (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    private void flushSafely() {
+        // Backing off after a failure; the scheduled runs keep checking until the delay has passed
+        if (consecutiveFailures > 0 && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+
+        while (!queue.isEmpty()) {
+            if (!flush()) {
+                consecutiveFailures++;
+                long backoffMs = Math.min(maxBackoffMs, flushIntervalMs << Math.min(consecutiveFailures, 16));
+                retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+
+                log.warn("{} registros de entrada/saída aguardando gravação; nova tentativa em {} ms",
+                        queue.size(), backoffMs);
+                return;
+            }
+
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Writes the oldest queued records to the database. Records are only removed from the queue once they have been
+     * written or permanently rejected, so a concurrent scan never misses a record that is neither queued nor
+     * persisted.
+     *
+     * @return false if the records could not be written and should be retried later
+     */
+    private boolean flush() {
+        List<PendingRecord> batch = new ArrayList<>(batchSize);
+        Iterator<PendingRecord> iterator = queue.iterator();
+
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+        }
+
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertGroupedByType(batch));
+        } catch (RuntimeException exception) {
+            log.warn("Falha na gravação em lote de {} registros; gravando individualmente", batch.size(), exception);
+            return insertIndividually(batch);
+        }
+
+        batch.forEach(this::remove);
+
+        return true;
+    }
+
+    private void insertGroupedByType(List<PendingRecord> batch) {
+        List<PendingRecord> entries = batch.stream().filter(record -> record.type() == RecordType.ENTRY).toList();
+        List<PendingRecord> exits = batch.stream().filter(record -> record.type() == RecordType.EXIT).toList();
+
+        insertEntryRecords(entries);
+        insertExitRecords(exits);
+    }
+
+    /**
+     * Writes the records one by one, in queue order, stopping at the first one that may succeed on a later attempt
+     * so that it and every record after it stay queued.
+     */
+    private boolean insertIndividually(List<PendingRecord> batch) {
+        for (PendingRecord pendingRecord : batch) {
+            try {
+                insertGroupedByType(List.of(pendingRecord));
+            } catch (DataIntegrityViolationException exception) {
+                // Rejected by a constraint, so retrying would only fail again
+                log.error("Registro descartado: {}", pendingRecord, exception);
+            } catch (RuntimeException exception) {
+                log.warn("Falha ao gravar o registro {}; mantido na fila", pendingRecord, exception);
+                return false;
+            }
+
+            remove(pendingRecord);
+        }
+
+        return true;
+    }
+
+    private void remove(PendingRecord pendingRecord) {
+        // Only the flusher removes from the queue, and in order, so the head is always the record just handled
+        queue.poll();
+        releasePending(pendingRecord);
+    }
+
+    private void insertBatch(String sql, List<PendingRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(sql, records, records.size(), (statement, record) -> {
+            statement.setLong(1, record.participantId());
+            statement.setTimestamp(2, Timestamp.valueOf(record.time()));
+            statement.setString(3, record.eventSegment().name());
+        });
+    }
+
+    enum RecordType {
+        ENTRY,
+        EXIT
+    }
+
+    record PendingRecord(RecordType type, Long participantId, EventSegment eventSegment, LocalDateTime time) {
+
+        private PendingKey key() {
+            return new PendingKey(type, participantId, time.toLocalDate());
+        }
+    }
+
+    private record PendingKey(RecordType type, Long participantId, LocalDate day) {
+    }
+}
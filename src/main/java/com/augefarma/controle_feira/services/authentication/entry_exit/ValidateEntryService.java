@@ -1,98 +1,229 @@
 package com.augefarma.controle_feira.services.authentication.entry_exit;
 
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.DailyPresenceDto;
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemDto;
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemResultDto;
 import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ValidateEntryExitResponseDto;
-import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
-import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.enums.EventSegment;
-import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
-import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
-import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.exceptions.EntityAlreadyPresentException;
+import com.augefarma.controle_feira.repositories.entry_exit.DailyPresenceRepository;
+import com.augefarma.controle_feira.repositories.entry_exit.DailyPresenceRepository.PresenceEntries;
+import com.augefarma.controle_feira.repositories.entry_exit.DailyPresenceRepository.PresenceKey;
+import com.augefarma.controle_feira.services.badge.BadgeScanService;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class ValidateEntryService {
-    private final EntryRecordRepository entryRecordRepository;
-    private final ParticipantRepository participantRepository;
+    private final DailyPresenceRepository dailyPresenceRepository;
+    private final BadgeScanService badgeScanService;
     private final RealTimeUpdateService realTimeUpdateService;
+    private final CheckInJournalService checkInJournalService;
+    private final AfterCommitExecutor afterCommitExecutor;
 
     @Autowired
-    public ValidateEntryService(EntryRecordRepository entryRecordRepository,
-                                ParticipantRepository participantRepository,
-                                RealTimeUpdateService realTimeUpdateService) {
-        this.entryRecordRepository = entryRecordRepository;
-        this.participantRepository = participantRepository;
+    public ValidateEntryService(DailyPresenceRepository dailyPresenceRepository,
+                                BadgeScanService badgeScanService,
+                                RealTimeUpdateService realTimeUpdateService,
+                                CheckInJournalService checkInJournalService,
+                                AfterCommitExecutor afterCommitExecutor) {
+        this.dailyPresenceRepository = dailyPresenceRepository;
+        this.badgeScanService = badgeScanService;
         this.realTimeUpdateService = realTimeUpdateService;
+        this.checkInJournalService = checkInJournalService;
+        this.afterCommitExecutor = afterCommitExecutor;
     }
 
+    /**
+     * Validates an entry scan. The daily presence upsert and the entry record are written in one transaction; the
+     * participant is only marked present once it commits.
+     */
+    @Transactional
     public ValidateEntryExitResponseDto validateEntryFair(String cpf, EventSegment eventSegment) {
-        ParticipantEntity participant = getParticipantByCpf(cpf);
+        ParticipantSnapshotDto participant = getParticipantByBadge(cpf);
         return handleCheckInFair(participant, eventSegment);
     }
 
 
-    @Transactional(readOnly = true)
-    private ParticipantEntity getParticipantByCpf(String cpf) {
-        return participantRepository.findByCpf(cpf)
-                .orElseThrow(() -> new ResourceNotFoundException("Nenhum participante encontrado"));
+    /**
+     * Validates an ordered batch of entry scans buffered by a gate scanner while it was offline. Applies the same
+     * first-entry-of-the-day rule as single scans and persists every accepted record in one transaction; today's
+     * scans only change who is present once it commits.
+     *
+     * @param scans the scans in the order they were captured
+     * @return one result per scan, in the same order
+     */
+    @Transactional
+    public List<ScanBatchItemResultDto> validateEntryBatch(List<ScanBatchItemDto> scans) {
+        Map<String, ParticipantSnapshotDto> participantsByCpf = getParticipantsByBadge(scans);
+        Map<PresenceKey, Integer> previousEntryCounts = registerDailyPresences(scans, participantsByCpf);
+        // Segments each participant entered through earlier in the batch, per day
+        Map<PresenceKey, Set<EventSegment>> segmentsSeen = new HashMap<>();
+
+        List<ScanBatchItemResultDto> results = new ArrayList<>(scans.size());
+        List<CheckInJournalService.PendingRecord> entryRecords = new ArrayList<>();
+        List<Runnable> presenceUpdates = new ArrayList<>();
+
+        for (int index = 0; index < scans.size(); index++) {
+            ScanBatchItemDto scan = scans.get(index);
+            ParticipantSnapshotDto participant = participantsByCpf.get(scan.cpf());
+
+            if (participant == null) {
+                results.add(new ScanBatchItemResultDto(index, scan.cpf(), false, "Nenhum participante encontrado"));
+                continue;
+            }
+
+            if (scan.segment() == null) {
+                results.add(new ScanBatchItemResultDto(index, scan.cpf(), false, "Segmento do evento não informado"));
+                continue;
+            }
+
+            LocalDateTime checkinTime = resolveCheckinTime(scan);
+            PresenceKey presenceKey = new PresenceKey(participant.id(), checkinTime.toLocalDate());
+            boolean hasPreviousEntry = segmentsSeen.containsKey(presenceKey)
+                    || previousEntryCounts.get(presenceKey) > 0;
+            boolean firstThroughSegment = segmentsSeen
+                    .computeIfAbsent(presenceKey, key -> EnumSet.noneOf(EventSegment.class))
+                    .add(scan.segment());
+
+            if (firstThroughSegment && checkinTime.toLocalDate().isEqual(LocalDate.now())) {
+                presenceUpdates.add(() -> updatePresence(participant, scan.segment(), !hasPreviousEntry));
+            }
+
+            entryRecords.add(new CheckInJournalService.PendingRecord(CheckInJournalService.RecordType.ENTRY,
+                    participant.id(), scan.segment(), checkinTime));
+            results.add(new ScanBatchItemResultDto(index, scan.cpf(), true,
+                    buildAccessGrantedResponse(participant, hasPreviousEntry).message()));
+        }
+
+        checkInJournalService.insertEntryRecords(entryRecords);
+        afterCommitExecutor.execute(() -> presenceUpdates.forEach(Runnable::run));
+
+        return results;
     }
 
 
-    private ValidateEntryExitResponseDto handleCheckInFair(ParticipantEntity participant, EventSegment eventSegment) {
-        List<EntryRecordEntity> previousEntries = hasPreviousEntryForFair(participant);
-        return performCheckIn(participant, eventSegment, previousEntries);
+    private LocalDateTime resolveCheckinTime(ScanBatchItemDto scan) {
+        return scan.clientTimestamp() != null ? scan.clientTimestamp() : LocalDateTime.now();
     }
 
 
-    private List<EntryRecordEntity> hasPreviousEntryForFair(ParticipantEntity participant) {
-        return  participant.getEntryRecords()
-                .stream()
-                .filter(entry -> entry.getEventSegment() == EventSegment.FAIR
-                        && entry.getCheckinTime().toLocalDate().isEqual(LocalDate.now())).toList();
+    private Map<String, ParticipantSnapshotDto> getParticipantsByBadge(List<ScanBatchItemDto> scans) {
+        Set<String> cpfs = scans.stream()
+                .map(ScanBatchItemDto::cpf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        return badgeScanService.resolveAll(cpfs);
     }
 
 
-    private ValidateEntryExitResponseDto performCheckIn(ParticipantEntity participant, EventSegment eventSegment,
-                                                        List<EntryRecordEntity> previousEntries) {
-        if (!previousEntries.isEmpty()) {
-            createEntryRecord(participant, eventSegment);
-            return buildAccessGrantedResponse(participant, true);
+    /**
+     * Counts the valid scans of the batch in the daily presences with a single upsert, so the batch agrees with
+     * concurrent gates on who entered first.
+     *
+     * @return how many entries each participant had on each day before the batch
+     */
+    private Map<PresenceKey, Integer> registerDailyPresences(List<ScanBatchItemDto> scans,
+                                                             Map<String, ParticipantSnapshotDto> participantsByCpf) {
+        Map<PresenceKey, PresenceEntries> presenceEntries = new LinkedHashMap<>();
+
+        for (ScanBatchItemDto scan : scans) {
+            ParticipantSnapshotDto participant = participantsByCpf.get(scan.cpf());
+
+            if (participant == null || scan.segment() == null) {
+                continue;
+            }
+
+            LocalDateTime checkinTime = resolveCheckinTime(scan);
+            PresenceKey presenceKey = new PresenceKey(participant.id(), checkinTime.toLocalDate());
+
+            presenceEntries.merge(presenceKey, new PresenceEntries(presenceKey, checkinTime, 1),
+                    (current, added) -> new PresenceEntries(presenceKey,
+                            current.firstCheckinTime().isBefore(checkinTime) ? current.firstCheckinTime() : checkinTime,
+                            current.entryCount() + 1));
         }
 
-        callRealtimeUpdateService(participant);
-        createEntryRecord(participant, eventSegment);
-        return buildAccessGrantedResponse(participant, false);
+        return dailyPresenceRepository.registerEntries(new ArrayList<>(presenceEntries.values()));
     }
 
 
-    @Transactional
-    private void createEntryRecord(ParticipantEntity participant,
-                                   EventSegment eventSegment) {
-        EntryRecordEntity entryRecord = new EntryRecordEntity();
-        entryRecord.setCheckinTime(LocalDateTime.now());
-        entryRecord.setEventSegment(eventSegment);
-        entryRecord.setParticipant(participant);
-
-        entryRecordRepository.save(entryRecord);
+    private ParticipantSnapshotDto getParticipantByBadge(String scannedCode) {
+        return badgeScanService.resolve(scannedCode);
+    }
+
+
+    private ValidateEntryExitResponseDto handleCheckInFair(ParticipantSnapshotDto participant,
+                                                           EventSegment eventSegment) {
+        LocalDateTime checkinTime = LocalDateTime.now();
+
+        // The upsert decides atomically whether this scan is the first entry of the day, through any segment
+        DailyPresenceDto presence = dailyPresenceRepository.registerEntry(participant.id(), checkinTime);
+
+        return performCheckIn(participant, eventSegment, checkinTime, !presence.isFirstEntryOfDay());
+    }
+
+
+    private ValidateEntryExitResponseDto performCheckIn(ParticipantSnapshotDto participant, EventSegment eventSegment,
+                                                        LocalDateTime checkinTime, boolean hasPreviousEntry) {
+        createEntryRecord(participant, eventSegment, checkinTime);
+        afterCommitExecutor.execute(() -> updatePresence(participant, eventSegment, !hasPreviousEntry));
+
+        return buildAccessGrantedResponse(participant, hasPreviousEntry);
+    }
+
+
+    /**
+     * Marks the participant present on their first entry of the day; later entries only add the segment to a
+     * participant still present, so entering after leaving does not bring them back.
+     */
+    private void updatePresence(ParticipantSnapshotDto participant, EventSegment eventSegment,
+                                boolean firstEntryOfDay) {
+        if (!firstEntryOfDay) {
+            realTimeUpdateService.addSegmentToPresent(participant.id(), eventSegment);
+            return;
+        }
+
+        try {
+            callRealtimeUpdateService(participant, eventSegment);
+        } catch (EntityAlreadyPresentException exception) {
+            // Already marked present by another instance; the committed entry stands either way
+        }
+    }
+
+
+    private void createEntryRecord(ParticipantSnapshotDto participant, EventSegment eventSegment,
+                                   LocalDateTime checkinTime) {
+        checkInJournalService.recordEntry(participant.id(), eventSegment, checkinTime);
     }
 
 
-    private void callRealtimeUpdateService(ParticipantEntity participant) {
-        participant.addToRealtimeUpdateService(realTimeUpdateService);
+    private void callRealtimeUpdateService(ParticipantSnapshotDto participant, EventSegment eventSegment) {
+        participant.addToRealtimeUpdateService(realTimeUpdateService, eventSegment);
     }
 
 
-    private ValidateEntryExitResponseDto buildAccessGrantedResponse(ParticipantEntity participant,
+    private ValidateEntryExitResponseDto buildAccessGrantedResponse(ParticipantSnapshotDto participant,
                                                                     boolean hasPreviousEntry) {
         if (hasPreviousEntry) {
-            return new ValidateEntryExitResponseDto("Acesso concedido: CPF " + participant.getCpf()
-                    + " com ID " + participant.getId() + " já possui um ou mais registros de acesso");
+            return new ValidateEntryExitResponseDto("Acesso concedido: CPF " + participant.cpf()
+                    + " com ID " + participant.id() + " já possui um ou mais registros de acesso");
         }
 
         return new ValidateEntryExitResponseDto("Acesso concedido");
@@ -1,117 +1,251 @@
 package com.augefarma.controle_feira.services.authentication.entry_exit;
 
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemDto;
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ScanBatchItemResultDto;
 import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.ValidateEntryExitResponseDto;
-import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
-import com.augefarma.controle_feira.entities.entry_exit.ExitRecordEntity;
-import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.enums.EventSegment;
-import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
+import com.augefarma.controle_feira.exceptions.EntityNotPresentException;
+import com.augefarma.controle_feira.repositories.entry_exit.DailyPresenceRepository;
 import com.augefarma.controle_feira.repositories.entry_exit.ExitRecordRepository;
-import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.services.badge.BadgeScanService;
 import com.augefarma.controle_feira.services.socket.RealTimeUpdateService;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class ValidateExitService {
 
     private final RealTimeUpdateService realTimeUpdateService;
+    private final DailyPresenceRepository dailyPresenceRepository;
     private final ExitRecordRepository exitRecordRepository;
-    private final ParticipantRepository participantRepository;
+    private final BadgeScanService badgeScanService;
+    private final CheckInJournalService checkInJournalService;
+    private final AfterCommitExecutor afterCommitExecutor;
 
     @Autowired
-    public ValidateExitService(RealTimeUpdateService realTimeUpdateService, ExitRecordRepository exitRecordRepository,
-                               ParticipantRepository participantRepository) {
+    public ValidateExitService(RealTimeUpdateService realTimeUpdateService,
+                               DailyPresenceRepository dailyPresenceRepository,
+                               ExitRecordRepository exitRecordRepository,
+                               BadgeScanService badgeScanService,
+                               CheckInJournalService checkInJournalService,
+                               AfterCommitExecutor afterCommitExecutor) {
         this.realTimeUpdateService = realTimeUpdateService;
+        this.dailyPresenceRepository = dailyPresenceRepository;
         this.exitRecordRepository = exitRecordRepository;
-        this.participantRepository = participantRepository;
+        this.badgeScanService = badgeScanService;
+        this.checkInJournalService = checkInJournalService;
+        this.afterCommitExecutor = afterCommitExecutor;
     }
 
+    /**
+     * Validates an exit scan. Entries and exits count through any event segment, like the first entry of the day;
+     * the participant is only marked as gone once the exit record commits.
+     */
+    @Transactional
     public ValidateEntryExitResponseDto validateExitBuffet(String cpf, EventSegment eventSegment) {
-        ParticipantEntity participant = getParticipantByCpf(cpf);
+        ParticipantSnapshotDto participant = getParticipantByBadge(cpf);
         return handleCheckOutBuffet(participant, eventSegment);
     }
 
 
-    @Transactional(readOnly = true)
-    private ParticipantEntity getParticipantByCpf(String cpf) {
-        return participantRepository.findByCpf(cpf)
-                .orElseThrow(() -> new ResourceNotFoundException("Nenhum participante encontrado"));
-    }
+    /**
+     * Validates an ordered batch of exit scans buffered by a gate scanner while it was offline. Applies the same
+     * rules as single scans and persists every accepted record in one transaction; today's first exits only mark
+     * participants as gone once it commits.
+     *
+     * @param scans the scans in the order they were captured
+     * @return one result per scan, in the same order
+     */
+    @Transactional
+    public List<ScanBatchItemResultDto> validateExitBatch(List<ScanBatchItemDto> scans) {
+        Map<String, ParticipantSnapshotDto> participantsByCpf = getParticipantsByBadge(scans);
+        List<Long> participantIds = participantsByCpf.values().stream().map(ParticipantSnapshotDto::id).toList();
+        Set<LocalDate> days = scans.stream()
+                .map(scan -> resolveCheckoutTime(scan).toLocalDate())
+                .collect(Collectors.toSet());
+
+        Set<ParticipantDay> participantDaysWithEntry = new HashSet<>();
+        Set<ParticipantDay> participantDaysWithExit = new HashSet<>();
+
+        if (!participantIds.isEmpty()) {
+            for (LocalDate day : days) {
+                collectParticipantDaysWithEntry(participantIds, day, participantDaysWithEntry);
+                collectParticipantDaysWithExit(participantIds, day, participantDaysWithExit);
+            }
+        }
 
+        List<ScanBatchItemResultDto> results = new ArrayList<>(scans.size());
+        List<CheckInJournalService.PendingRecord> exitRecords = new ArrayList<>();
+        List<ParticipantSnapshotDto> participantsGone = new ArrayList<>();
 
-    private ValidateEntryExitResponseDto handleCheckOutBuffet(
-            ParticipantEntity participant, EventSegment eventSegment) {
+        for (int index = 0; index < scans.size(); index++) {
+            ScanBatchItemDto scan = scans.get(index);
+            ParticipantSnapshotDto participant = participantsByCpf.get(scan.cpf());
+
+            if (participant == null) {
+                results.add(new ScanBatchItemResultDto(index, scan.cpf(), false, "Nenhum participante encontrado"));
+                continue;
+            }
 
-        List<EntryRecordEntity> previousEntries = hasPreviousEntryForFair(participant);
-        List<ExitRecordEntity> previousExits = hasPreviousExitForBuffet(participant);
+            if (scan.segment() == null) {
+                results.add(new ScanBatchItemResultDto(index, scan.cpf(), false, "Segmento do evento não informado"));
+                continue;
+            }
 
-        if (previousEntries.isEmpty()) {
-            return new ValidateEntryExitResponseDto("Saída negado: CPF " + participant.getCpf()
-                    + " com ID " + participant.getId() + " usuário sem registro de check-in");
+            LocalDateTime checkoutTime = resolveCheckoutTime(scan);
+            ParticipantDay participantDay = new ParticipantDay(participant.id(), checkoutTime.toLocalDate());
+
+            if (!participantDaysWithEntry.contains(participantDay)) {
+                results.add(new ScanBatchItemResultDto(index, scan.cpf(), false,
+                        "Saída negado: CPF " + participant.cpf() + " com ID " + participant.id()
+                                + " usuário sem registro de check-in"));
+                continue;
+            }
+
+            boolean hasPreviousExit = !participantDaysWithExit.add(participantDay);
+
+            if (!hasPreviousExit && participantDay.day().isEqual(LocalDate.now())) {
+                participantsGone.add(participant);
+            }
+
+            exitRecords.add(new CheckInJournalService.PendingRecord(CheckInJournalService.RecordType.EXIT,
+                    participant.id(), scan.segment(), checkoutTime));
+            results.add(new ScanBatchItemResultDto(index, scan.cpf(), true,
+                    buildRegisteredExitResponse(participant, hasPreviousExit).message()));
         }
 
-        return performCheckOut(participant, eventSegment, previousExits);
+        checkInJournalService.insertExitRecords(exitRecords);
+        afterCommitExecutor.execute(() -> participantsGone.forEach(this::markGone));
+
+        return results;
+    }
+
+
+    private LocalDateTime resolveCheckoutTime(ScanBatchItemDto scan) {
+        return scan.clientTimestamp() != null ? scan.clientTimestamp() : LocalDateTime.now();
+    }
+
+
+    private Map<String, ParticipantSnapshotDto> getParticipantsByBadge(List<ScanBatchItemDto> scans) {
+        Set<String> cpfs = scans.stream()
+                .map(ScanBatchItemDto::cpf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        return badgeScanService.resolveAll(cpfs);
     }
 
 
-    private List<EntryRecordEntity> hasPreviousEntryForFair(ParticipantEntity participant) {
-        return  participant.getEntryRecords()
-                .stream()
-                .filter(entry -> entry.getEventSegment() == EventSegment.FAIR
-                        && entry.getCheckinTime().toLocalDate().isEqual(LocalDate.now())).toList();
+    private void collectParticipantDaysWithEntry(List<Long> participantIds, LocalDate day,
+                                                 Set<ParticipantDay> participantDays) {
+        dailyPresenceRepository.findParticipantIdsWithEntry(participantIds, day)
+                .forEach(participantId -> participantDays.add(new ParticipantDay(participantId, day)));
     }
 
-    private List<ExitRecordEntity> hasPreviousExitForBuffet(ParticipantEntity participant) {
-        return  participant.getExitRecords()
-                .stream()
-                .filter(exit -> exit.getEventSegment() == EventSegment.BUFFET
-                        && exit.getCheckoutTime().toLocalDate().isEqual(LocalDate.now())).toList();
+
+    private void collectParticipantDaysWithExit(List<Long> participantIds, LocalDate day,
+                                                Set<ParticipantDay> participantDays) {
+        exitRecordRepository.findParticipantIdsWithExitBetween(participantIds, day.atStartOfDay(),
+                        day.atTime(LocalTime.MAX))
+                .forEach(participantId -> participantDays.add(new ParticipantDay(participantId, day)));
+
+        participantIds.stream()
+                .filter(participantId -> checkInJournalService.hasPendingExit(participantId, day))
+                .forEach(participantId -> participantDays.add(new ParticipantDay(participantId, day)));
+    }
+
+
+    private ParticipantSnapshotDto getParticipantByBadge(String scannedCode) {
+        return badgeScanService.resolve(scannedCode);
     }
 
-    private ValidateEntryExitResponseDto performCheckOut(ParticipantEntity participant, EventSegment eventSegment,
-                                                         List<ExitRecordEntity> previousEntries) {
 
-        if (!previousEntries.isEmpty()) {
-            createExitRecord(participant, eventSegment);
-            return buildRegisteredExitResponse(participant, true);
+    private ValidateEntryExitResponseDto handleCheckOutBuffet(
+            ParticipantSnapshotDto participant, EventSegment eventSegment) {
+
+        if (!hasPreviousEntry(participant)) {
+            return new ValidateEntryExitResponseDto("Saída negado: CPF " + participant.cpf()
+                    + " com ID " + participant.id() + " usuário sem registro de check-in");
         }
 
-        callRealtimeUpdateService(participant);
+        return performCheckOut(participant, eventSegment, hasPreviousExit(participant));
+    }
+
+
+    private boolean hasPreviousEntry(ParticipantSnapshotDto participant) {
+        return dailyPresenceRepository.hasEntry(participant.id(), LocalDate.now());
+    }
+
+    private boolean hasPreviousExit(ParticipantSnapshotDto participant) {
+        LocalDate today = LocalDate.now();
+
+        return checkInJournalService.hasPendingExit(participant.id(), today)
+                || exitRecordRepository.existsByParticipantIdAndCheckoutTimeBetween(participant.id(),
+                        today.atStartOfDay(), today.atTime(LocalTime.MAX));
+    }
+
+    private ValidateEntryExitResponseDto performCheckOut(ParticipantSnapshotDto participant, EventSegment eventSegment,
+                                                         boolean hasPreviousExit) {
         createExitRecord(participant, eventSegment);
-        return buildRegisteredExitResponse(participant, false);
+
+        if (!hasPreviousExit) {
+            markGoneAfterCommit(participant);
+        }
+
+        return buildRegisteredExitResponse(participant, hasPreviousExit);
     }
 
 
-    private void callRealtimeUpdateService(ParticipantEntity participant) {
+    private void markGoneAfterCommit(ParticipantSnapshotDto participant) {
+        afterCommitExecutor.execute(() -> markGone(participant));
+    }
+
+
+    private void markGone(ParticipantSnapshotDto participant) {
+        try {
+            callRealtimeUpdateService(participant);
+        } catch (EntityNotPresentException exception) {
+            // Already marked as gone by another instance; the committed exit stands either way
+        }
+    }
+
+
+    private void callRealtimeUpdateService(ParticipantSnapshotDto participant) {
         participant.removeToRealtimeUpdateService(realTimeUpdateService);
     }
 
 
-    @Transactional
-    private void createExitRecord(ParticipantEntity participant,
+    private void createExitRecord(ParticipantSnapshotDto participant,
                                   EventSegment eventSegment) {
-        ExitRecordEntity exitRecord = new ExitRecordEntity();
-        exitRecord.setCheckoutTime(LocalDateTime.now());
-        exitRecord.setEventSegment(eventSegment);
-        exitRecord.setParticipant(participant);
-
-        exitRecordRepository.save(exitRecord);
+        checkInJournalService.recordExit(participant.id(), eventSegment, LocalDateTime.now());
     }
 
 
-    private ValidateEntryExitResponseDto buildRegisteredExitResponse(ParticipantEntity participant,
+    private ValidateEntryExitResponseDto buildRegisteredExitResponse(ParticipantSnapshotDto participant,
                                                                     boolean hasPreviousExit) {
         if (hasPreviousExit) {
-            return new ValidateEntryExitResponseDto("Saída registrada: CPF " + participant.getCpf()
-                    + " com ID " + participant.getId() + " já possui um ou mais registros de saída");
+            return new ValidateEntryExitResponseDto("Saída registrada: CPF " + participant.cpf()
+                    + " com ID " + participant.id() + " já possui um ou mais registros de saída");
         }
 
         return new ValidateEntryExitResponseDto("Saída registrada");
     }
+
+
+    private record ParticipantDay(Long participantId, LocalDate day) {
+    }
 }
@@ -1,15 +1,15 @@
 package com.augefarma.controle_feira.services.authorization;
 
 import com.augefarma.controle_feira.dtos.authorization.WristbandsResponseDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
-import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
-import com.augefarma.controle_feira.enums.EventSegment;
-import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
-import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
+import com.augefarma.controle_feira.services.badge.BadgeScanService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
@@ -17,39 +17,41 @@ import java.util.Locale;
 @Service
 public class WristbandsService {
 
-    private final ParticipantRepository participantRepository;
+    private final BadgeScanService badgeScanService;
+    private final EntryRecordRepository entryRecordRepository;
 
     @Autowired
-    public WristbandsService(ParticipantRepository participantRepository) {
-        this.participantRepository = participantRepository;
+    public WristbandsService(BadgeScanService badgeScanService,
+                             EntryRecordRepository entryRecordRepository) {
+        this.badgeScanService = badgeScanService;
+        this.entryRecordRepository = entryRecordRepository;
     }
 
 
     public WristbandsResponseDto checkDeliveryOfWristband(String cpfEntity) {
-        ParticipantEntity participant = getParticipantByCpf(cpfEntity);
+        ParticipantSnapshotDto participant = getParticipantByBadge(cpfEntity);
 
         return returnResponseBasedOnFairCheckIn(getTheLatestFairRegistration(participant), participant);
     }
 
-    @Transactional(readOnly = true)
-    private ParticipantEntity getParticipantByCpf(String cpf) {
-        return participantRepository.findByCpf(cpf)
-                .orElseThrow(() -> new ResourceNotFoundException("Nenhum participante encontrado"));
+
+    private ParticipantSnapshotDto getParticipantByBadge(String scannedCode) {
+        return badgeScanService.resolve(scannedCode);
     }
 
 
+    // Entries through any segment count, like the first entry of the day at the gates
     @Transactional(readOnly = true)
-    private List<EntryRecordEntity> getTheLatestFairRegistration(ParticipantEntity participant) {
+    private List<EntryRecordEntity> getTheLatestFairRegistration(ParticipantSnapshotDto participant) {
+        LocalDate today = LocalDate.now();
 
-        return participant.getEntryRecords()
-                .stream()
-                .filter(entry -> entry.getEventSegment() == EventSegment.FAIR
-                        && entry.getCheckinTime().toLocalDate().isEqual(LocalDate.now())).toList();
+        return entryRecordRepository.findByParticipantIdAndCheckinTimeBetweenOrderByCheckinTimeAsc(
+                participant.id(), today.atStartOfDay(), today.atTime(LocalTime.MAX));
     }
 
 
     private WristbandsResponseDto returnResponseBasedOnFairCheckIn(
-            List<EntryRecordEntity> fairEntryRecordsOnTheCurrentDate, ParticipantEntity participant) {
+            List<EntryRecordEntity> fairEntryRecordsOnTheCurrentDate, ParticipantSnapshotDto participant) {
 
         if (fairEntryRecordsOnTheCurrentDate.isEmpty()) {
             return new WristbandsResponseDto(participant);
@@ -0,0 +1,26 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops a participant's cached badge as soon as their data is updated, instead of leaving the old badge cached
+ * until the next request for it notices the changed hash.
+ */
+@Component
+public class BadgeCacheInvalidationListener {
+
+    private final BadgeCacheService badgeCacheService;
+
+    @Autowired
+    public BadgeCacheInvalidationListener(BadgeCacheService badgeCacheService) {
+        this.badgeCacheService = badgeCacheService;
+    }
+
+    @PostUpdate
+    public void participantUpdated(ParticipantEntity participant) {
+        badgeCacheService.invalidateParticipant(participant.getId());
+    }
+}
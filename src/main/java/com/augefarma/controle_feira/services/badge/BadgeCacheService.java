@@ -0,0 +1,332 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
+import com.google.zxing.WriterException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of rendered badge PDFs keyed by a SHA-256 hash of everything printed on them plus the template version, so
+ * a participant whose data did not change gets the same bytes and the same ETag every time. Recently used badges are
+ * kept in memory up to a byte budget; when a disk directory is configured, badges evicted from memory are spilled
+ * there, up to a byte budget of its own with the least recently used files deleted first. Badges whose hash changes,
+ * such as signed ones each day or all of them after a template change, are never asked for again, so the directory
+ * is cleared at startup instead of carrying them over. Badges are only rendered when their body is written, so a
+ * request answered with 304 (Not Modified) never renders anything, and disk hits are streamed from the file. With
+ * both tiers disabled, badges are rendered straight to the response. Invalidations wait for the transaction that
+ * changed the participant to commit, so a badge rendered from the old data in the meantime is not left behind in the
+ * cache.
+ */
+@Slf4j
+@Service
+public class BadgeCacheService {
+
+    // Only files named like the ones this cache writes are ever deleted from the directory
+    private static final Pattern DISK_FILE_NAME = Pattern.compile("\\p{XDigit}{64}\\.pdf(\\.tmp)?");
+
+    private final BadgeService badgeService;
+    private final AfterCommitExecutor afterCommitExecutor;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final Path diskPath;
+
+    // Access-ordered, so iteration starts at the least recently used badge
+    private final LinkedHashMap<String, byte[]> pdfsByHash = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    // Size of each badge spilled to disk, access-ordered like the memory tier
+    private final LinkedHashMap<String, Long> diskSizesByHash = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+
+    // Last badge served for each participant, so it can be dropped when the participant is deleted
+    private final ConcurrentHashMap<Long, CachedBadgeKey> keysByParticipant = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BadgeCacheService(BadgeService badgeService,
+                             AfterCommitExecutor afterCommitExecutor,
+                             @Value("${badge.cache.max-memory-bytes:33554432}") long maxMemoryBytes,
+                             @Value("${badge.cache.max-disk-bytes:268435456}") long maxDiskBytes,
+                             @Value("${badge.cache.disk-path:}") String diskPath) {
+        this.badgeService = badgeService;
+        this.afterCommitExecutor = afterCommitExecutor;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.diskPath = diskPath.isBlank() || maxDiskBytes <= 0 ? null : Path.of(diskPath);
+    }
+
+    /**
+     * Deletes the badges a previous run left in the disk directory, along with any half-written file.
+     */
+    @PostConstruct
+    public void clearDisk() {
+        if (diskPath == null || !Files.isDirectory(diskPath)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskPath,
+                file -> DISK_FILE_NAME.matcher(file.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException exception) {
+            log.warn("Falha ao limpar o cache de crachás em disco {}", diskPath, exception);
+        }
+    }
+
+    /**
+     * Returns the badge of a participant, to be rendered when written only if no badge with the same content is
+     * cached.
+     *
+     * @param badge the data printed on the badge
+     * @return the badge body and its content hash
+     */
+    public CachedBadgeDto getBadge(BadgeDto badge) {
+        String hash = hash(badge);
+
+        CachedBadgeKey previous = keysByParticipant.put(badge.participantId(),
+                new CachedBadgeKey(hash, badge.laboratoryId()));
+
+        // The participant's data changed since its last badge, which no one will ask for again
+        if (previous != null && !previous.hash().equals(hash)) {
+            remove(previous.hash());
+        }
+
+        byte[] cached = getFromMemory(hash);
+
+        if (cached != null) {
+            return new CachedBadgeDto(hash, outputStream -> outputStream.write(cached));
+        }
+
+        if (maxMemoryBytes <= 0 && diskPath == null) {
+            return new CachedBadgeDto(hash, outputStream -> writeBadge(badge, outputStream));
+        }
+
+        return new CachedBadgeDto(hash, outputStream -> {
+            // Removed from disk meanwhile, e.g. by an invalidation, falls back to rendering
+            if (diskPath != null && copyFromDisk(hash, outputStream)) {
+                return;
+            }
+
+            byte[] pdf = generateBadge(badge);
+            putInMemory(hash, pdf);
+            outputStream.write(pdf);
+        });
+    }
+
+    /**
+     * Removes the cached badge of a participant once the current transaction commits.
+     */
+    public void invalidateParticipant(Long participantId) {
+        afterCommitExecutor.execute(() -> {
+            CachedBadgeKey key = keysByParticipant.remove(participantId);
+
+            if (key != null) {
+                remove(key.hash());
+            }
+        });
+    }
+
+    /**
+     * Removes the cached badges of every member of a laboratory once the current transaction commits.
+     */
+    public void invalidateLaboratory(Long laboratoryId) {
+        afterCommitExecutor.execute(() -> keysByParticipant.values().removeIf(key -> {
+            if (!Objects.equals(key.laboratoryId(), laboratoryId)) {
+                return false;
+            }
+
+            remove(key.hash());
+            return true;
+        }));
+    }
+
+    private String hash(BadgeDto badge) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            // Fields are separated by a byte no text contains, so shifting characters between them changes the hash.
+            // A signed QR code payload carries its issue date, so those badges are rendered again once a day
+            for (String field : List.of(badgeService.getTemplateVersion(), Objects.toString(badge.type()),
+                    Objects.toString(badge.fullName()), Objects.toString(badge.corporateReason()),
+                    Objects.toString(badgeService.getQRCodePayload(badge)))) {
+                digest.update(field.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private byte[] getFromMemory(String hash) {
+        synchronized (pdfsByHash) {
+            return pdfsByHash.get(hash);
+        }
+    }
+
+    private void putInMemory(String hash, byte[] pdf) {
+        List<Map.Entry<String, byte[]>> evicted = new ArrayList<>();
+
+        synchronized (pdfsByHash) {
+            byte[] replaced = pdfsByHash.put(hash, pdf);
+            memoryBytes += pdf.length - (replaced != null ? replaced.length : 0);
+
+            Iterator<Map.Entry<String, byte[]>> eldest = pdfsByHash.entrySet().iterator();
+
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                eldest.remove();
+                memoryBytes -= entry.getValue().length;
+                evicted.add(entry);
+            }
+        }
+
+        // Spilled outside the lock, so disk writes never hold up other requests
+        for (Map.Entry<String, byte[]> entry : evicted) {
+            writeToDisk(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(String hash) {
+        synchronized (pdfsByHash) {
+            byte[] removed = pdfsByHash.remove(hash);
+
+            if (removed != null) {
+                memoryBytes -= removed.length;
+            }
+        }
+
+        if (diskPath != null) {
+            forgetOnDisk(hash);
+            deleteFromDisk(hash);
+        }
+    }
+
+    private boolean copyFromDisk(String hash, OutputStream outputStream) throws IOException {
+        InputStream input;
+
+        try {
+            input = Files.newInputStream(diskFile(hash));
+        } catch (NoSuchFileException exception) {
+            forgetOnDisk(hash);
+            return false;
+        }
+
+        // Marks the file as recently used
+        synchronized (diskSizesByHash) {
+            diskSizesByHash.get(hash);
+        }
+
+        try (input) {
+            input.transferTo(outputStream);
+            return true;
+        }
+    }
+
+    private byte[] generateBadge(BadgeDto badge) {
+        try {
+            return badgeService.generateBadge(badge);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } catch (WriterException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private void writeBadge(BadgeDto badge, OutputStream outputStream) throws IOException {
+        try {
+            badgeService.writeBadge(badge, outputStream);
+        } catch (WriterException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private void writeToDisk(String hash, byte[] pdf) {
+        // A badge larger than the whole budget would only evict everything and then itself
+        if (diskPath == null || pdf.length > maxDiskBytes) {
+            return;
+        }
+
+        Path file = diskFile(hash);
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(diskPath);
+            Files.write(temporaryFile, pdf);
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            log.warn("Falha ao gravar o crachá {} no cache em disco", hash, exception);
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+
+        synchronized (diskSizesByHash) {
+            Long replaced = diskSizesByHash.put(hash, (long) pdf.length);
+            diskBytes += pdf.length - (replaced != null ? replaced : 0);
+
+            Iterator<Map.Entry<String, Long>> eldest = diskSizesByHash.entrySet().iterator();
+
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                eldest.remove();
+                diskBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+            }
+        }
+
+        evicted.forEach(this::deleteFromDisk);
+    }
+
+    private void forgetOnDisk(String hash) {
+        synchronized (diskSizesByHash) {
+            Long removed = diskSizesByHash.remove(hash);
+
+            if (removed != null) {
+                diskBytes -= removed;
+            }
+        }
+    }
+
+    private void deleteFromDisk(String hash) {
+        try {
+            Files.deleteIfExists(diskFile(hash));
+        } catch (IOException exception) {
+            log.warn("Falha ao remover o crachá {} do cache em disco", hash, exception);
+        }
+    }
+
+    private Path diskFile(String hash) {
+        return diskPath.resolve(hash + ".pdf");
+    }
+
+    private record CachedBadgeKey(String hash, Long laboratoryId) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.layout.Document;
+import java.io.Closeable;
+
+/**
+ * A PDF being written with one badge per page, either through the layout engine or through a badge template.
+ * Closing it finishes the PDF but leaves the underlying stream open.
+ */
+public class BadgeDocument implements Closeable {
+
+    private final Document document;
+    private final BadgeTemplate template;
+
+    BadgeDocument(Document document, BadgeTemplate template) {
+        this.document = document;
+        this.template = template;
+    }
+
+    public PdfDocument getPdfDocument() {
+        return document.getPdfDocument();
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the template pages are stamped with, or null if they are laid out by the layout engine.
+     */
+    BadgeTemplate getTemplate() {
+        return template;
+    }
+
+    @Override
+    public void close() {
+        // iText refuses to close a document without pages
+        if (getPdfDocument().getNumberOfPages() == 0) {
+            getPdfDocument().addNewPage();
+        }
+
+        document.close();
+    }
+}
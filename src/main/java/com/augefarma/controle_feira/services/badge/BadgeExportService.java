@@ -0,0 +1,253 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
+import com.augefarma.controle_feira.repositories.laboratory.LaboratoryRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantSnapshotProjection;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports the badges of many participants in one response, either as a single multi-page PDF or as a ZIP with one
+ * PDF per participant. Participants are loaded one page at a time and rendered on a shared pool of threads, so memory
+ * use does not grow with the size of the export and concurrent exports together never use more than the pool's
+ * threads.
+ */
+@Service
+public class BadgeExportService {
+
+    private final ParticipantRepository participantRepository;
+    private final LaboratoryRepository laboratoryRepository;
+    private final BadgeService badgeService;
+    private final int pageSize;
+    private final int inFlightWindow;
+    private final ExecutorService renderExecutor;
+
+    /**
+     * @param renderThreads  threads rendering badges, shared by every export; 0 uses one per available processor
+     * @param inFlightWindow badges of a ZIP export rendered ahead of the one being written; 0 uses two per thread
+     */
+    @Autowired
+    public BadgeExportService(ParticipantRepository participantRepository,
+                              LaboratoryRepository laboratoryRepository, BadgeService badgeService,
+                              @Value("${badge.export.page-size:200}") int pageSize,
+                              @Value("${badge.export.render-threads:0}") int renderThreads,
+                              @Value("${badge.export.in-flight-window:0}") int inFlightWindow) {
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.participantRepository = participantRepository;
+        this.laboratoryRepository = laboratoryRepository;
+        this.badgeService = badgeService;
+        this.pageSize = pageSize;
+        this.inFlightWindow = inFlightWindow > 0 ? inFlightWindow : threads * 2;
+        this.renderExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "badge-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Exports the badges of every member of a laboratory.
+     *
+     * @param laboratoryId the ID of the laboratory
+     * @param format       a multi-page PDF or a ZIP of PDFs
+     * @return a body writing the export to the response
+     * @throws ResourceNotFoundException if the laboratory is not found
+     */
+    public StreamingResponseBody exportLaboratoryMemberBadges(Long laboratoryId, BadgeExportFormat format) {
+        if (!laboratoryRepository.existsById(laboratoryId)) {
+            throw new ResourceNotFoundException("Laboratório não encontrado");
+        }
+
+        return outputStream -> export(afterId -> participantRepository
+                .findLaboratoryMemberSnapshotsAfter(laboratoryId, afterId, pageSize), format, outputStream);
+    }
+
+    /**
+     * Exports the badges of every pharmacy representative.
+     *
+     * @param format a multi-page PDF or a ZIP of PDFs
+     * @return a body writing the export to the response
+     */
+    public StreamingResponseBody exportPharmacyRepresentativeBadges(BadgeExportFormat format) {
+        return outputStream -> export(afterId -> participantRepository
+                .findPharmacyRepresentativeSnapshotsAfter(afterId, pageSize), format, outputStream);
+    }
+
+    /**
+     * Exports the badges of the given participants, in ID order. IDs without a participant are skipped.
+     *
+     * @param participantIds the IDs of pharmacy representatives or laboratory members
+     * @param format         a multi-page PDF or a ZIP of PDFs
+     * @return a body writing the export to the response
+     */
+    public StreamingResponseBody exportBadges(Collection<Long> participantIds, BadgeExportFormat format) {
+        List<Long> sortedIds = participantIds.stream().distinct().sorted().toList();
+
+        return outputStream -> export(afterId -> {
+            List<Long> remainingIds = sortedIds.stream().filter(id -> id > afterId).toList();
+
+            // Skips chunks of IDs without participants, since an empty page ends the export
+            for (int from = 0; from < remainingIds.size(); from += pageSize) {
+                List<ParticipantSnapshotProjection> page = participantRepository.findSnapshotsByIdIn(
+                        remainingIds.subList(from, Math.min(from + pageSize, remainingIds.size())));
+
+                if (!page.isEmpty()) {
+                    return page;
+                }
+            }
+
+            return List.of();
+        }, format, outputStream);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderExecutor.shutdownNow();
+    }
+
+    private void export(Function<Long, List<ParticipantSnapshotProjection>> pageLoader, BadgeExportFormat format,
+                        OutputStream outputStream) throws IOException {
+        if (format == BadgeExportFormat.ZIP) {
+            exportZip(pageLoader, outputStream);
+        } else {
+            exportPdf(pageLoader, outputStream);
+        }
+    }
+
+    /**
+     * Writes every badge as a page of a single PDF. QR codes for a page of participants are encoded on the render
+     * pool; iText layout is not thread-safe, so the pages themselves are added in order.
+     */
+    private void exportPdf(Function<Long, List<ParticipantSnapshotProjection>> pageLoader,
+                           OutputStream outputStream) {
+        BadgeDocument document = badgeService.openBadgeDocument(outputStream);
+
+        forEachPage(pageLoader, badges -> {
+            List<CompletableFuture<BitMatrix>> qrCodes = badges.stream()
+                    .map(badge -> CompletableFuture.supplyAsync(() -> encodeQRCode(badge), renderExecutor))
+                    .toList();
+
+            try {
+                for (int index = 0; index < badges.size(); index++) {
+                    badgeService.addBadgePage(document, badges.get(index), qrCodes.get(index).join());
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+
+        document.close();
+    }
+
+    /**
+     * Writes one PDF per participant into a ZIP. Badges are independent, so they are rendered on the render pool
+     * while earlier ones are written; at most {@code inFlightWindow} rendered or rendering badges are held at once,
+     * and entries are written in participant order as soon as each one's turn comes.
+     */
+    private void exportZip(Function<Long, List<ParticipantSnapshotProjection>> pageLoader,
+                           OutputStream outputStream) throws IOException {
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+        ArrayDeque<PendingBadge> inFlight = new ArrayDeque<>(inFlightWindow);
+
+        try {
+            forEachPage(pageLoader, badges -> {
+                for (BadgeDto badge : badges) {
+                    if (inFlight.size() == inFlightWindow) {
+                        writeZipEntry(zipOutputStream, inFlight.poll());
+                    }
+
+                    inFlight.add(new PendingBadge(badge.participantId(),
+                            CompletableFuture.supplyAsync(() -> generateBadge(badge), renderExecutor)));
+                }
+            });
+
+            while (!inFlight.isEmpty()) {
+                writeZipEntry(zipOutputStream, inFlight.poll());
+            }
+        } finally {
+            // Stops rendering badges no one will write, e.g. when the client went away
+            inFlight.forEach(pending -> pending.pdf().cancel(false));
+        }
+
+        zipOutputStream.finish();
+    }
+
+    private void writeZipEntry(ZipOutputStream zipOutputStream, PendingBadge pending) {
+        try {
+            zipOutputStream.putNextEntry(new ZipEntry("badge_" + pending.participantId() + ".pdf"));
+            zipOutputStream.write(pending.pdf().join());
+            zipOutputStream.closeEntry();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void forEachPage(Function<Long, List<ParticipantSnapshotProjection>> pageLoader,
+                             Consumer<List<BadgeDto>> pageConsumer) {
+        long afterId = 0;
+
+        while (true) {
+            List<ParticipantSnapshotProjection> page = pageLoader.apply(afterId);
+
+            if (page.isEmpty()) {
+                return;
+            }
+
+            List<BadgeDto> badges = new ArrayList<>(page.size());
+
+            for (ParticipantSnapshotProjection projection : page) {
+                badges.add(new BadgeDto(new ParticipantSnapshotDto(projection)));
+            }
+
+            pageConsumer.accept(badges);
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private BitMatrix encodeQRCode(BadgeDto badge) {
+        try {
+            return badgeService.encodeQRCode(badge);
+        } catch (WriterException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private byte[] generateBadge(BadgeDto badge) {
+        try {
+            return badgeService.generateBadge(badge);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } catch (WriterException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private record PendingBadge(Long participantId, CompletableFuture<byte[]> pdf) {
+    }
+}
@@ -0,0 +1,242 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeJobDto;
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.enums.BadgeJobStatus;
+import com.augefarma.controle_feira.exceptions.BadgeJobFailedException;
+import com.augefarma.controle_feira.exceptions.BadgeJobNotReadyException;
+import com.augefarma.controle_feira.exceptions.BadgeJobQueueFullException;
+import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders badge exports in the background, so a large print run neither ties up a servlet thread for its whole
+ * duration nor competes with the check-in endpoints for them. Jobs run on a dedicated pool with a fixed number of
+ * threads and a bounded queue; once the queue is full new jobs are refused instead of piling up. Participants are
+ * loaded a page at a time outside any transaction, so no database connection is held while iText renders. Results
+ * are written to disk and kept for a limited time after the job finishes; expired jobs and their files are purged
+ * every minute, whether or not new jobs are submitted.
+ */
+@Slf4j
+@Service
+public class BadgeJobService {
+
+    private static final long PURGE_INTERVAL_SECONDS = 60;
+
+    private final BadgeExportService badgeExportService;
+    private final Path resultPath;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService purger;
+
+    private final ConcurrentHashMap<String, BadgeJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BadgeJobService(BadgeExportService badgeExportService,
+                           @Value("${badge.jobs.concurrency:2}") int concurrency,
+                           @Value("${badge.jobs.queue-depth:20}") int queueDepth,
+                           @Value("${badge.jobs.path:${java.io.tmpdir}/controle-feira/badge-jobs}") String resultPath,
+                           @Value("${badge.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.badgeExportService = badgeExportService;
+        this.resultPath = Path.of(resultPath);
+        this.retention = Duration.ofMinutes(retentionMinutes);
+
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), runnable -> {
+                    Thread thread = new Thread(runnable, "badge-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "badge-job-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.purger.scheduleWithFixedDelay(this::removeExpiredJobs, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues the rendering of the badges of the given participants.
+     *
+     * @param participantIds the IDs of pharmacy representatives or laboratory members
+     * @param format         a multi-page PDF or a ZIP of PDFs
+     * @return the queued job
+     * @throws BadgeJobQueueFullException if the queue has no room for another job
+     */
+    public BadgeJobDto submit(Collection<Long> participantIds, BadgeExportFormat format) {
+        List<Long> distinctIds = participantIds.stream().distinct().toList();
+        BadgeJob job = new BadgeJob(UUID.randomUUID().toString(), format, distinctIds.size());
+
+        jobs.put(job.id, job);
+
+        try {
+            executor.execute(() -> run(job, distinctIds));
+        } catch (RejectedExecutionException exception) {
+            jobs.remove(job.id);
+            throw new BadgeJobQueueFullException("Fila de crachás cheia; tente novamente em instantes");
+        }
+
+        return job.toDto();
+    }
+
+    /**
+     * Returns the current state of a job.
+     *
+     * @throws ResourceNotFoundException if the job does not exist or has expired
+     */
+    public BadgeJobDto getJob(String jobId) {
+        return findJob(jobId).toDto();
+    }
+
+    /**
+     * Streams the result of a completed job.
+     *
+     * @return a body copying the rendered file to the response
+     * @throws ResourceNotFoundException  if the job does not exist or has expired
+     * @throws BadgeJobNotReadyException if the job is still queued or running
+     * @throws BadgeJobFailedException   if the job has failed and will never have a result
+     */
+    public StreamingResponseBody download(String jobId) {
+        BadgeJob job = findJob(jobId);
+
+        if (job.status == BadgeJobStatus.FAILED) {
+            throw new BadgeJobFailedException("Tarefa de crachás falhou: " + job.error);
+        }
+
+        if (job.status != BadgeJobStatus.COMPLETED) {
+            throw new BadgeJobNotReadyException("Crachás ainda não disponíveis: tarefa " + job.status);
+        }
+
+        Path file = resultFile(job);
+
+        return outputStream -> {
+            try (InputStream input = Files.newInputStream(file)) {
+                input.transferTo(outputStream);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        executor.shutdownNow();
+        jobs.values().forEach(this::deleteResult);
+        jobs.clear();
+    }
+
+    private void run(BadgeJob job, List<Long> participantIds) {
+        job.status = BadgeJobStatus.RUNNING;
+
+        Path file = resultFile(job);
+
+        try {
+            Files.createDirectories(resultPath);
+
+            try (OutputStream output = Files.newOutputStream(file)) {
+                badgeExportService.exportBadges(participantIds, job.format).writeTo(output);
+            }
+
+            job.finish(BadgeJobStatus.COMPLETED, null);
+        } catch (IOException | RuntimeException exception) {
+            log.error("Falha ao gerar os crachás da tarefa {}", job.id, exception);
+            deleteResult(job);
+            job.finish(BadgeJobStatus.FAILED, "Falha ao gerar os crachás");
+        }
+    }
+
+    private BadgeJob findJob(String jobId) {
+        BadgeJob job = jobs.get(jobId);
+
+        if (job == null || job.isExpired(retention)) {
+            throw new ResourceNotFoundException("Tarefa de crachás não encontrada");
+        }
+
+        return job;
+    }
+
+    private void removeExpiredJobs() {
+        jobs.values().removeIf(job -> {
+            if (!job.isExpired(retention)) {
+                return false;
+            }
+
+            deleteResult(job);
+            return true;
+        });
+    }
+
+    private void deleteResult(BadgeJob job) {
+        try {
+            Files.deleteIfExists(resultFile(job));
+        } catch (IOException exception) {
+            log.warn("Falha ao remover o arquivo da tarefa de crachás {}", job.id, exception);
+        }
+    }
+
+    private Path resultFile(BadgeJob job) {
+        return resultPath.resolve(job.id + "." + job.format.name().toLowerCase());
+    }
+
+    /**
+     * A job's mutable state; written by its rendering thread, read by the polling requests.
+     */
+    private static final class BadgeJob {
+
+        private final String id;
+        private final BadgeExportFormat format;
+        private final int participants;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private volatile BadgeJobStatus status = BadgeJobStatus.QUEUED;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private BadgeJob(String id, BadgeExportFormat format, int participants) {
+            this.id = id;
+            this.format = format;
+            this.participants = participants;
+        }
+
+        private void finish(BadgeJobStatus finalStatus, String failure) {
+            error = failure;
+            finishedAt = LocalDateTime.now();
+            status = finalStatus;
+        }
+
+        private boolean isExpired(Duration retention) {
+            LocalDateTime finished = finishedAt;
+            return finished != null && finished.plus(retention).isBefore(LocalDateTime.now());
+        }
+
+        private BadgeJobDto toDto() {
+            return new BadgeJobDto(id, status, format, participants, submittedAt, finishedAt, error);
+        }
+    }
+}
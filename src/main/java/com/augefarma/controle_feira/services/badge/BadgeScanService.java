@@ -0,0 +1,125 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeTokenDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.exceptions.InvalidBadgeTokenException;
+import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Resolves what a gate scanned on a badge to the participant it belongs to. Badges whose QR code carries a signed
+ * token are verified in memory and resolved by participant ID, so a corrupt or forged scan never reaches the cache
+ * or the database; badges printed before tokens were enabled still carry the CPF and are resolved by it, unless
+ * {@code badge.token.require} is set, so that a CPF typed into a gate or printed on a homemade badge is refused. A
+ * token only resolves to a participant who still has the type and laboratory it was issued for.
+ */
+@Service
+public class BadgeScanService {
+
+    private final BadgeTokenService badgeTokenService;
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService;
+    private final boolean tokenRequired;
+
+    @Autowired
+    public BadgeScanService(BadgeTokenService badgeTokenService,
+                            ParticipantSnapshotCacheService participantSnapshotCacheService,
+                            @Value("${badge.token.require:false}") boolean tokenRequired) {
+        if (tokenRequired && !badgeTokenService.isEnabled()) {
+            throw new IllegalStateException("badge.token.require exige que badge.token.secret esteja configurado");
+        }
+
+        this.badgeTokenService = badgeTokenService;
+        this.participantSnapshotCacheService = participantSnapshotCacheService;
+        this.tokenRequired = tokenRequired;
+    }
+
+    /**
+     * Resolves a scanned badge.
+     *
+     * @param scannedCode the content of the badge QR code: a signed token or a CPF
+     * @return the participant the badge belongs to
+     * @throws InvalidBadgeTokenException if the scanned token is corrupt, forged, expired or issued for another
+     *                                    laboratory, or a CPF was scanned while tokens are required
+     * @throws ResourceNotFoundException  if no participant matches the badge
+     */
+    public ParticipantSnapshotDto resolve(String scannedCode) {
+        if (!badgeTokenService.isToken(scannedCode)) {
+            if (tokenRequired) {
+                throw new InvalidBadgeTokenException("Crachá sem QR code assinado, emita um novo crachá");
+            }
+
+            return participantSnapshotCacheService.findByCpf(scannedCode)
+                    .orElseThrow(() -> new ResourceNotFoundException("Nenhum participante encontrado"));
+        }
+
+        BadgeTokenDto token = badgeTokenService.verify(scannedCode);
+        ParticipantSnapshotDto participant = participantSnapshotCacheService.findById(token.participantId())
+                .filter(found -> found.type() == token.type())
+                .orElseThrow(() -> new ResourceNotFoundException("Nenhum participante encontrado"));
+
+        if (!Objects.equals(participant.laboratoryId(), token.laboratoryId())) {
+            throw new InvalidBadgeTokenException("Crachá desatualizado, emita um novo crachá");
+        }
+
+        return participant;
+    }
+
+    /**
+     * Resolves several scanned badges, loading every cache miss with at most one query per kind of badge. Scans
+     * that {@link #resolve(String)} would reject are left out, like those matching no participant.
+     *
+     * @param scannedCodes the contents of the badge QR codes
+     * @return the participants found, keyed by scanned code
+     */
+    public Map<String, ParticipantSnapshotDto> resolveAll(Collection<String> scannedCodes) {
+        Set<String> cpfs = new HashSet<>();
+        Map<String, BadgeTokenDto> tokens = new HashMap<>();
+
+        for (String scannedCode : scannedCodes) {
+            if (!badgeTokenService.isToken(scannedCode)) {
+                if (!tokenRequired) {
+                    cpfs.add(scannedCode);
+                }
+
+                continue;
+            }
+
+            try {
+                tokens.put(scannedCode, badgeTokenService.verify(scannedCode));
+            } catch (InvalidBadgeTokenException exception) {
+                // Reported by the caller as a scan matching no participant
+            }
+        }
+
+        Map<String, ParticipantSnapshotDto> found = new HashMap<>();
+
+        if (!cpfs.isEmpty()) {
+            found.putAll(participantSnapshotCacheService.findAllByCpf(cpfs));
+        }
+
+        if (!tokens.isEmpty()) {
+            Map<Long, ParticipantSnapshotDto> participantsById = participantSnapshotCacheService.findAllById(
+                    tokens.values().stream().map(BadgeTokenDto::participantId).toList());
+
+            tokens.forEach((scannedCode, token) -> {
+                ParticipantSnapshotDto participant = participantsById.get(token.participantId());
+
+                if (participant != null && participant.type() == token.type()
+                        && Objects.equals(participant.laboratoryId(), token.laboratoryId())) {
+                    found.put(scannedCode, participant);
+                }
+            });
+        }
+
+        return found;
+    }
+}
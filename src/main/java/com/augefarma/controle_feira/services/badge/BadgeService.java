@@ -1,91 +1,168 @@
 package com.augefarma.controle_feira.services.badge;
 
-import com.augefarma.controle_feira.entities.laboratory.LaboratoryMemberEntity;
-import com.augefarma.controle_feira.entities.pharmacy_representative.PharmacyRepresentativeEntity;
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
-import com.itextpdf.io.image.ImageData;
 import com.itextpdf.io.image.ImageDataFactory;
-import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfXObject;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.borders.Border;
 import com.itextpdf.layout.element.*;
 import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.properties.AreaBreakType;
 import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.layout.properties.VerticalAlignment;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 @Service
 public class BadgeService {
 
-    private final QRCodeService qrCodeService;
+    // Bump whenever the badge layout changes, so cached badges rendered with the old one are not served
+    private static final String TEMPLATE_VERSION = "1";
+
+    // Pixel size of the PNG QR code, which iText then scales to fit its cell
+    private static final int QR_CODE_PNG_WIDTH = 120;
+
+    private final QRCodeRendering qrCodeRendering;
+    private final BadgeTemplateService badgeTemplateService;
+    private final boolean templateEnabled;
+    private final BadgeTokenService badgeTokenService;
 
     @Autowired
-    public BadgeService(QRCodeService qrCodeService) {
-        this.qrCodeService = qrCodeService;
+    public BadgeService(@Value("${badge.qr-code.rendering:VECTOR}") QRCodeRendering qrCodeRendering,
+                        BadgeTemplateService badgeTemplateService,
+                        @Value("${badge.template.enabled:false}") boolean templateEnabled,
+                        BadgeTokenService badgeTokenService) {
+        this.qrCodeRendering = qrCodeRendering;
+        this.badgeTemplateService = badgeTemplateService;
+        this.templateEnabled = templateEnabled;
+        this.badgeTokenService = badgeTokenService;
     }
 
     /**
-     * Generates a badge for a client.
+     * Identifies the layout badges are currently rendered with, including how their QR code is drawn and whether
+     * they are stamped from a template.
+     */
+    public String getTemplateVersion() {
+        return TEMPLATE_VERSION + "-" + qrCodeRendering + (templateEnabled ? "-template" : "-layout");
+    }
+
+    /**
+     * Generates a badge from the data printed on it.
      *
-     * @param pharmacyRepresentative the client entity containing information for the badge
+     * @param badge the name, corporate reason and CPF for the badge
      * @return a byte array representing the generated badge PDF
      * @throws WriterException if an error occurs during QR code generation
      * @throws IOException     if an error occurs during PDF creation
      */
-    public byte[] generateBadge(PharmacyRepresentativeEntity pharmacyRepresentative)
-            throws WriterException, IOException {
-        return createBadgePDF(
-                pharmacyRepresentative.getName(),
-                pharmacyRepresentative.getCorporateReason(),
-                pharmacyRepresentative.getCpf());
+    public byte[] generateBadge(BadgeDto badge) throws WriterException, IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeBadge(badge, outputStream);
+
+        return outputStream.toByteArray();
     }
 
     /**
-     * Generates a badge for a laboratory.
+     * Writes a badge straight to the given stream, without holding the whole PDF in memory. The stream is left
+     * open.
      *
-     * @param laboratoryMember the laboratory entity containing information for the badge
-     * @return a byte array representing the generated badge PDF
+     * @param badge        the name, corporate reason and CPF for the badge
+     * @param outputStream the stream to write the PDF to, usually the response body
      * @throws WriterException if an error occurs during QR code generation
      * @throws IOException     if an error occurs during PDF creation
      */
-    public byte[] generateBadge(LaboratoryMemberEntity laboratoryMember)
-            throws WriterException, IOException {
-        return createBadgePDF(
-                laboratoryMember.getName(),
-                laboratoryMember.getLaboratory().getCorporateReason(),
-                laboratoryMember.getCpf());
+    public void writeBadge(BadgeDto badge, OutputStream outputStream) throws WriterException, IOException {
+        BadgeDocument document = openBadgeDocument(outputStream);
+        addBadgePage(document, badge, encodeQRCode(badge));
+        document.close();
     }
 
     /**
-     * Creates a badge PDF containing a QR code, full name, and corporate reason.
+     * Opens a badge document writing to the given stream. Closing the document finishes the PDF but leaves the stream
+     * open, so several documents can be written to one ZIP or response.
      *
-     * @param fullName the full name to include in the badge
-     * @param corporateReason the corporate reason to include in the badge
-     * @param cpf the CPF to encode in the QR code
-     * @return a byte array representing the generated badge PDF
+     * @param outputStream the stream to write the PDF to
+     * @return a document to add badge pages to
+     */
+    public BadgeDocument openBadgeDocument(OutputStream outputStream) {
+        PdfWriter pdfWriter = new PdfWriter(outputStream);
+        pdfWriter.setCloseStream(false);
+
+        PdfDocument pdfDoc = new PdfDocument(pdfWriter);
+        pdfDoc.setDefaultPageSize(BadgeTemplateService.pageSize());
+
+        return new BadgeDocument(new Document(pdfDoc), templateEnabled ? badgeTemplateService.open(pdfDoc) : null);
+    }
+
+    /**
+     * Returns what the badge's QR code encodes: the participant's signed badge token, or the CPF while no signing
+     * key is configured.
+     */
+    public String getQRCodePayload(BadgeDto badge) {
+        return badgeTokenService.isEnabled() ? badgeTokenService.issue(badge) : badge.cpf();
+    }
+
+    /**
+     * Encodes a badge's QR code. Safe to call from several threads, so QR codes for a batch can be encoded in
+     * parallel while its pages are laid out in order.
+     *
+     * @param badge the participant to encode in the QR code
+     * @return the QR code modules, sized for the configured rendering
      * @throws WriterException if an error occurs during QR code generation
-     * @throws IOException if an error occurs during PDF creation
      */
-    private byte[] createBadgePDF(String fullName, String corporateReason, String cpf)
-            throws WriterException, IOException {
+    public BitMatrix encodeQRCode(BadgeDto badge) throws WriterException {
+        // Vector QR codes are drawn one unit per module, so they only need the minimal matrix
+        int qrCodeWidth = qrCodeRendering == QRCodeRendering.VECTOR ? 0 : QR_CODE_PNG_WIDTH;
+
+        return new QRCodeWriter().encode(getQRCodePayload(badge), BarcodeFormat.QR_CODE, qrCodeWidth, qrCodeWidth);
+    }
+
+    /**
+     * Adds a badge page containing a QR code, full name, and corporate reason, after any page already in the
+     * document.
+     *
+     * @param document a document opened with {@link #openBadgeDocument(OutputStream)}
+     * @param badge    the name and corporate reason to include in the badge, and the variant of its template
+     * @param qrCode   the QR code from {@link #encodeQRCode(BadgeDto)}
+     * @throws IOException if an error occurs while encoding a PNG QR code
+     */
+    public void addBadgePage(BadgeDocument document, BadgeDto badge, BitMatrix qrCode) throws IOException {
+        PdfXObject qrCodeXObject = createQRCodeXObject(qrCode, document.getPdfDocument());
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();;
+        if (document.getTemplate() != null) {
+            document.getTemplate().addBadgePage(badge, qrCodeXObject);
+        } else {
+            addLayoutPage(document.getDocument(), badge.fullName(), badge.corporateReason(), qrCodeXObject);
+        }
+    }
 
-        PdfDocument pdfDoc = new PdfDocument(new PdfWriter(outputStream));
-        pdfDoc.setDefaultPageSize(new PageSize(576, 360));
+    /**
+     * Lays out a badge page with iText's table layout, rebuilding the whole page for every badge.
+     */
+    private void addLayoutPage(Document document, String fullName, String corporateReason,
+                               PdfXObject qrCodeXObject) {
+        PdfDocument pdfDoc = document.getPdfDocument();
 
-        Document document = new Document(pdfDoc);
+        if (pdfDoc.getNumberOfPages() > 0) {
+            document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+        }
 
         // Definir larguras das colunas (em porcentagem)
         float[] columnWidths = {2f, 1f}; // 2: maior largura para o nome e razão, 1: menor largura para o QR Code
@@ -114,16 +191,9 @@ public class BadgeService {
         // Add cell to the first column of the table
         table.addCell(nameReasonCell);
 
-        // Generate QR code
-        int qrCodeWidth = 120;
-        BitMatrix bitMatrix = new QRCodeWriter().encode(cpf, BarcodeFormat.QR_CODE, qrCodeWidth, qrCodeWidth);
-        ByteArrayOutputStream qrCodeOutputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", qrCodeOutputStream);
-
         // Cria a imagem do código QR no PDF
-        byte[] qrCodeBytes = qrCodeOutputStream.toByteArray();
-        ImageData imageData = ImageDataFactory.create(qrCodeBytes);
-        Image qrCodeImage = new Image(imageData);
+        Image qrCodeImage = qrCodeXObject instanceof PdfFormXObject form
+                ? new Image(form) : new Image((PdfImageXObject) qrCodeXObject);
         qrCodeImage.scaleToFit(125, 125);
         qrCodeImage.setHorizontalAlignment(HorizontalAlignment.LEFT);
 
@@ -146,9 +216,72 @@ public class BadgeService {
 
         // Adicionar a tabela ao documento
         document.add(table);
+    }
 
-        document.close();
+    /**
+     * Creates the QR code XObject in the configured rendering. Vector QR codes are a form XObject filled with one
+     * rectangle per block of dark modules, which skips the PNG encode and decode and stays sharp at any print size.
+     */
+    private PdfXObject createQRCodeXObject(BitMatrix qrCode, PdfDocument pdfDoc) throws IOException {
+        if (qrCodeRendering == QRCodeRendering.PNG) {
+            ByteArrayOutputStream qrCodeOutputStream = new ByteArrayOutputStream();
+            MatrixToImageWriter.writeToStream(qrCode, "PNG", qrCodeOutputStream);
 
-        return outputStream.toByteArray();
+            return new PdfImageXObject(ImageDataFactory.create(qrCodeOutputStream.toByteArray()));
+        }
+
+        int width = qrCode.getWidth();
+        int height = qrCode.getHeight();
+
+        PdfFormXObject qrCodeXObject = new PdfFormXObject(new Rectangle(width, height));
+        PdfCanvas canvas = new PdfCanvas(qrCodeXObject, pdfDoc);
+
+        // Covers the dark modules with as few rectangles as possible: each one grows right along its row, then down
+        // while the rows below are dark across the same width
+        boolean[] covered = new boolean[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!qrCode.get(x, y) || covered[y * width + x]) {
+                    continue;
+                }
+
+                int right = x;
+
+                while (right < width && qrCode.get(right, y) && !covered[y * width + right]) {
+                    right++;
+                }
+
+                int bottom = y + 1;
+
+                while (bottom < height && isUncoveredRun(qrCode, covered, x, right, bottom)) {
+                    bottom++;
+                }
+
+                for (int row = y; row < bottom; row++) {
+                    for (int column = x; column < right; column++) {
+                        covered[row * width + column] = true;
+                    }
+                }
+
+                // PDF coordinates grow upwards, matrix rows grow downwards
+                canvas.rectangle(x, height - bottom, right - x, bottom - y);
+            }
+        }
+
+        canvas.fill();
+        canvas.release();
+
+        return qrCodeXObject;
+    }
+
+    private boolean isUncoveredRun(BitMatrix qrCode, boolean[] covered, int from, int to, int y) {
+        for (int x = from; x < to; x++) {
+            if (!qrCode.get(x, y) || covered[y * qrCode.getWidth() + x]) {
+                return false;
+            }
+        }
+
+        return true;
     }
 }
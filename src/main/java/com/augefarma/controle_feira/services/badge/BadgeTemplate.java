@@ -0,0 +1,116 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfXObject;
+import com.itextpdf.layout.Canvas;
+import com.itextpdf.layout.element.Div;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.VerticalAlignment;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.augefarma.controle_feira.services.badge.BadgeTemplateService.CAPTION_Y;
+
+/**
+ * The badge template opened on one document. Fonts are added to the document once, and the static artwork of each
+ * variant is drawn once into a form XObject that every page of that variant reuses.
+ */
+public class BadgeTemplate {
+
+    private final PdfDocument pdfDoc;
+    private final ImageData logo;
+    private final Map<ParticipantType, String> captions;
+    private final PdfFont regularFont;
+    private final PdfFont boldFont;
+
+    // Same grid as the layout engine: 36pt margins, a 2:1 split between the text and the QR code, and the QR code
+    // at the height the layout puts it. Owned by this template, since iText may modify the rectangles it is given
+    private final PageSize pageSize = BadgeTemplateService.pageSize();
+    private final Rectangle textArea = new Rectangle(36, 36, 336, 271);
+    private final Rectangle qrCodeArea = new Rectangle(372, 109, 125, 125);
+    private final Rectangle logoArea = new Rectangle(36, 288, 120, 54);
+
+    private final Map<ParticipantType, PdfFormXObject> artwork = new EnumMap<>(ParticipantType.class);
+
+    BadgeTemplate(PdfDocument pdfDoc, FontProgram regularFont, FontProgram boldFont, ImageData logo,
+                  Map<ParticipantType, String> captions) {
+        this.pdfDoc = pdfDoc;
+        this.logo = logo;
+        this.captions = captions;
+        this.regularFont = PdfFontFactory.createFont(regularFont, PdfEncodings.WINANSI);
+        this.boldFont = PdfFontFactory.createFont(boldFont, PdfEncodings.WINANSI);
+    }
+
+    /**
+     * Adds a page with the badge's static artwork, then stamps its corporate reason, name and QR code into the grid.
+     *
+     * @param qrCode the QR code, as a form or image XObject of this document
+     */
+    public void addBadgePage(BadgeDto badge, PdfXObject qrCode) {
+        PdfPage page = pdfDoc.addNewPage(pageSize);
+        PdfCanvas pdfCanvas = new PdfCanvas(page);
+
+        pdfCanvas.addXObjectAt(getArtwork(badge), 0, 0);
+        pdfCanvas.addXObjectFittedIntoRectangle(qrCode, qrCodeArea);
+
+        // Only the two paragraphs go through the layout engine, since long names and reasons must still wrap
+        Div text = new Div()
+                .setHeight(textArea.getHeight())
+                .setVerticalAlignment(VerticalAlignment.MIDDLE)
+                .add(new Paragraph(badge.corporateReason()).setFont(boldFont).setFontSize(20)
+                        .setTextAlignment(TextAlignment.CENTER))
+                .add(new Paragraph(badge.fullName()).setFont(regularFont).setFontSize(18)
+                        .setTextAlignment(TextAlignment.CENTER));
+
+        try (Canvas canvas = new Canvas(pdfCanvas, textArea)) {
+            canvas.add(text);
+        }
+
+        pdfCanvas.release();
+    }
+
+    private PdfFormXObject getArtwork(BadgeDto badge) {
+        if (badge.type() == null) {
+            throw new IllegalArgumentException("Tipo de participante não informado no crachá "
+                    + badge.participantId());
+        }
+
+        return artwork.computeIfAbsent(badge.type(), this::drawArtwork);
+    }
+
+    private PdfFormXObject drawArtwork(ParticipantType type) {
+        PdfFormXObject xObject = new PdfFormXObject(pageSize);
+        PdfCanvas canvas = new PdfCanvas(xObject, pdfDoc);
+
+        if (logo != null) {
+            canvas.addImageFittedIntoRectangle(logo, logoArea, false);
+        }
+
+        String caption = captions.get(type);
+        float captionWidth = regularFont.getWidth(caption, 10);
+
+        canvas.beginText()
+                .setFontAndSize(regularFont, 10)
+                .setFillColor(ColorConstants.GRAY)
+                .moveText((pageSize.getWidth() - captionWidth) / 2, CAPTION_Y)
+                .showText(caption)
+                .endText();
+
+        canvas.release();
+        return xObject;
+    }
+}
@@ -0,0 +1,87 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Prepares everything badges have in common once, at startup: the parsed fonts, the decoded event logo and the
+ * caption of each template variant. A {@link BadgeTemplate} opened on a document turns these into PDF resources and
+ * static artwork once for that document, and each badge then only stamps its name, corporate reason and QR code into
+ * the grid, without going through iText's table layout. Templates are off by default: unlike the table layout, the
+ * fixed text area does not grow with very long names or corporate reasons.
+ */
+@Slf4j
+@Service
+public class BadgeTemplateService {
+
+    static final float PAGE_WIDTH = 576;
+    static final float PAGE_HEIGHT = 360;
+    static final float CAPTION_Y = 14;
+
+    private static final Map<ParticipantType, String> CAPTIONS = Map.of(
+            ParticipantType.PHARMACY_REPRESENTATIVE, "REPRESENTANTE DE FARMÁCIA",
+            ParticipantType.LABORATORY_MEMBER, "LABORATÓRIO");
+
+    private final FontProgram regularFont;
+    private final FontProgram boldFont;
+    private final ImageData logo;
+
+    @Autowired
+    public BadgeTemplateService(@Value("${badge.template.logo-path:}") String logoPath) {
+        this.regularFont = loadFont(StandardFonts.HELVETICA);
+        this.boldFont = loadFont(StandardFonts.HELVETICA_BOLD);
+        this.logo = loadLogo(logoPath);
+    }
+
+    /**
+     * Returns a new badge page size. iText page sizes and rectangles are mutable, so each caller gets its own.
+     */
+    public static PageSize pageSize() {
+        return new PageSize(PAGE_WIDTH, PAGE_HEIGHT);
+    }
+
+    /**
+     * Opens the badge template on a document. The template is bound to that document and, like it, must only be
+     * used by one thread.
+     */
+    public BadgeTemplate open(PdfDocument pdfDoc) {
+        return new BadgeTemplate(pdfDoc, regularFont, boldFont, logo, CAPTIONS);
+    }
+
+    private FontProgram loadFont(String fontName) {
+        try {
+            return FontProgramFactory.createFont(fontName);
+        } catch (IOException exception) {
+            throw new IllegalStateException("Fonte dos crachás indisponível: " + fontName, exception);
+        }
+    }
+
+    private ImageData loadLogo(String logoPath) {
+        if (logoPath.isBlank()) {
+            return null;
+        }
+
+        try {
+            ImageData image = ImageDataFactory.create(Files.readAllBytes(Path.of(logoPath)));
+            log.info("Logotipo dos crachás carregado de {}", logoPath);
+
+            return image;
+        } catch (IOException exception) {
+            throw new IllegalStateException("Logotipo dos crachás ilegível: " + logoPath, exception);
+        }
+    }
+}
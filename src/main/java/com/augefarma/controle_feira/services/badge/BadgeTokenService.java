@@ -0,0 +1,212 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.BadgeTokenDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.exceptions.InvalidBadgeTokenException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.Arrays;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Issues and verifies the signed tokens encoded in badge QR codes instead of the participant's CPF. A token carries
+ * the participant ID, participant type, laboratory ID and issue date, followed by a truncated HMAC-SHA256 of all of
+ * them, so a gate can tell who a badge belongs to without a database lookup, and a corrupt or forged scan is
+ * rejected in memory before any I/O. Without a configured secret badges keep encoding the CPF.
+ */
+@Slf4j
+@Service
+public class BadgeTokenService {
+
+    // Version of the token format; a CPF never starts with a letter, so scans can tell tokens apart
+    static final String TOKEN_PREFIX = "CF1.";
+
+    // 96 bits is far beyond what can be brute-forced one scan at a time, and keeps the QR code small
+    private static final int MAC_LENGTH = 12;
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    // Issue dates up to a day ahead are accepted, for servers whose clocks or time zones disagree
+    private static final int MAX_CLOCK_SKEW_DAYS = 1;
+
+    private static final byte[] PREFIX_BYTES = TOKEN_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] secret;
+    private final int maxAgeDays;
+
+    @Autowired
+    public BadgeTokenService(@Value("${badge.token.secret:}") String secret,
+                             @Value("${badge.token.max-age-days:0}") int maxAgeDays) {
+        this.secret = decodeSecret(secret);
+        this.maxAgeDays = maxAgeDays;
+    }
+
+    @PostConstruct
+    public void warnIfDisabled() {
+        if (!isEnabled()) {
+            log.warn("badge.token.secret não configurado: os QR codes dos crachás continuarão exibindo o CPF");
+        }
+    }
+
+    /**
+     * Whether badges are issued with a signed token. Tokens are only verified while this is true.
+     */
+    public boolean isEnabled() {
+        return secret != null;
+    }
+
+    /**
+     * Issues the token for a badge rendered today.
+     *
+     * @param badge the participant the badge belongs to
+     * @return the token to encode in the badge's QR code
+     */
+    public String issue(BadgeDto badge) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Chave de assinatura dos crachás não configurada");
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16);
+        payload.write(badge.type() == ParticipantType.LABORATORY_MEMBER ? 1 : 0);
+        writeVarLong(payload, badge.participantId());
+        writeVarLong(payload, badge.laboratoryId() != null ? badge.laboratoryId() : 0);
+        writeVarLong(payload, LocalDate.now().toEpochDay());
+
+        byte[] payloadBytes = payload.toByteArray();
+        byte[] token = Arrays.concatenate(payloadBytes, mac(payloadBytes, payloadBytes.length));
+
+        return TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Tells a scanned token apart from a scanned CPF, without verifying it.
+     */
+    public boolean isToken(String scannedCode) {
+        return scannedCode != null && scannedCode.startsWith(TOKEN_PREFIX);
+    }
+
+    /**
+     * Verifies a scanned token in memory.
+     *
+     * @param token the content of a badge QR code
+     * @return who the badge was issued to
+     * @throws InvalidBadgeTokenException if the token is corrupt, forged, expired or tokens are disabled
+     */
+    public BadgeTokenDto verify(String token) {
+        if (!isEnabled() || !isToken(token)) {
+            throw new InvalidBadgeTokenException("Crachá inválido");
+        }
+
+        byte[] bytes;
+
+        try {
+            bytes = Base64.getUrlDecoder().decode(token.substring(TOKEN_PREFIX.length()));
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidBadgeTokenException("Crachá inválido");
+        }
+
+        int payloadLength = bytes.length - MAC_LENGTH;
+
+        // The signature is checked before anything in the payload is trusted, in constant time
+        if (payloadLength < 4 || !Arrays.constantTimeAreEqual(MAC_LENGTH, mac(bytes, payloadLength), 0,
+                bytes, payloadLength)) {
+            throw new InvalidBadgeTokenException("Crachá inválido");
+        }
+
+        // Past this point only a token signed with our key but laid out by a different format version can fail
+        ParticipantType type = switch (bytes[0]) {
+            case 0 -> ParticipantType.PHARMACY_REPRESENTATIVE;
+            case 1 -> ParticipantType.LABORATORY_MEMBER;
+            default -> throw new InvalidBadgeTokenException("Crachá inválido");
+        };
+
+        int[] position = {1};
+        long participantId = readVarLong(bytes, payloadLength, position);
+        long laboratoryId = readVarLong(bytes, payloadLength, position);
+        LocalDate issuedOn = LocalDate.ofEpochDay(readVarLong(bytes, payloadLength, position));
+
+        if (position[0] != payloadLength) {
+            throw new InvalidBadgeTokenException("Crachá inválido");
+        }
+
+        checkIssueDate(issuedOn);
+
+        return new BadgeTokenDto(participantId, type, laboratoryId != 0 ? laboratoryId : null, issuedOn);
+    }
+
+    private void checkIssueDate(LocalDate issuedOn) {
+        LocalDate today = LocalDate.now();
+
+        if (issuedOn.isAfter(today.plusDays(MAX_CLOCK_SKEW_DAYS))) {
+            throw new InvalidBadgeTokenException("Crachá inválido");
+        }
+
+        if (maxAgeDays > 0 && issuedOn.isBefore(today.minusDays(maxAgeDays))) {
+            throw new InvalidBadgeTokenException("Crachá expirado, emita um novo crachá");
+        }
+    }
+
+    private byte[] mac(byte[] payload, int payloadLength) {
+        // HMac keeps state between calls, so each one gets its own
+        HMac hMac = new HMac(new SHA256Digest());
+        hMac.init(new KeyParameter(secret));
+        hMac.update(PREFIX_BYTES, 0, PREFIX_BYTES.length);
+        hMac.update(payload, 0, payloadLength);
+
+        byte[] mac = new byte[hMac.getMacSize()];
+        hMac.doFinal(mac, 0);
+
+        return Arrays.copyOf(mac, MAC_LENGTH);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream outputStream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        outputStream.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int length, int[] position) {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= length) {
+                break;
+            }
+
+            byte current = bytes[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new InvalidBadgeTokenException("Crachá inválido");
+    }
+
+    private static byte[] decodeSecret(String secret) {
+        if (secret.isBlank()) {
+            return null;
+        }
+
+        byte[] decoded = Base64.getDecoder().decode(secret.trim());
+
+        if (decoded.length < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("badge.token.secret deve ter ao menos " + MIN_SECRET_LENGTH + " bytes");
+        }
+
+        return decoded;
+    }
+}
@@ -0,0 +1,193 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.exceptions.QRCodeDecoderBusyException;
+import com.augefarma.controle_feira.exceptions.UnreadableFrameException;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes badge QR codes from camera frames sent by kiosks without a hardware scanner. Only the centered region of
+ * interest of a frame is decoded, subsampled while the image is read so that no frame is ever held at full
+ * resolution. Frames are decoded on a dedicated pool with a fixed number of threads and a bounded queue, each thread
+ * borrowing one of as many reused QR code readers; once the queue is full new frames are refused instead of piling
+ * up behind the check-in endpoints.
+ *
+ * <p>A frame whose request times out is dropped if it is still queued, freeing its slot at once. One already being
+ * decoded cannot be stopped, since ZXing never checks for interruption: it keeps its thread until it finishes, so
+ * under sustained overload it is the bounded queue, not the timeout, that sheds frames.
+ */
+@Service
+public class QRCodeDecoderService {
+
+    private static final Map<DecodeHintType, Object> HINTS = Map.of(
+            DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+
+    private final int maxDimension;
+    private final double regionOfInterest;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<QRCodeReader> readers;
+
+    /**
+     * @param threads          threads decoding frames; 0 uses one per available processor
+     * @param queueDepth       frames waiting for a thread before new ones are refused
+     * @param maxDimension     longest side, in pixels, the region of interest is subsampled to
+     * @param regionOfInterest fraction of the frame's width and height, centered, searched for the QR code
+     * @param timeoutMs        how long a request waits for its frame, queue included; a frame already being decoded
+     *                         when it runs out is still decoded to the end
+     */
+    @Autowired
+    public QRCodeDecoderService(@Value("${badge.decoder.threads:0}") int threads,
+                                @Value("${badge.decoder.queue-depth:16}") int queueDepth,
+                                @Value("${badge.decoder.max-dimension:800}") int maxDimension,
+                                @Value("${badge.decoder.region-of-interest:0.6}") double regionOfInterest,
+                                @Value("${badge.decoder.timeout-ms:1000}") long timeoutMs) {
+        int decoderThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.maxDimension = maxDimension;
+        this.regionOfInterest = Math.min(1, Math.max(0.1, regionOfInterest));
+        this.timeoutMs = timeoutMs;
+        this.readers = new ArrayBlockingQueue<>(decoderThreads);
+        this.executor = new ThreadPoolExecutor(decoderThreads, decoderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), runnable -> {
+                    Thread thread = new Thread(runnable, "qr-decoder-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        for (int index = 0; index < decoderThreads; index++) {
+            readers.add(new QRCodeReader());
+        }
+    }
+
+    /**
+     * Decodes the badge QR code in a camera frame.
+     *
+     * @param frame a JPEG or PNG image
+     * @return the content of the QR code
+     * @throws UnreadableFrameException   if the frame is not an image or has no readable QR code in its region of
+     *                                    interest
+     * @throws QRCodeDecoderBusyException if the frame could not be decoded in time because the pool is saturated
+     */
+    public String decode(byte[] frame) {
+        Future<String> result;
+
+        try {
+            result = executor.submit(() -> decodeFrame(frame));
+        } catch (RejectedExecutionException exception) {
+            throw new QRCodeDecoderBusyException("Leitor de QR code ocupado; tente novamente em instantes");
+        }
+
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            result.cancel(true);
+            executor.purge();
+            throw new QRCodeDecoderBusyException("Leitor de QR code ocupado; tente novamente em instantes");
+        } catch (InterruptedException exception) {
+            result.cancel(true);
+            executor.purge();
+            Thread.currentThread().interrupt();
+            throw new QRCodeDecoderBusyException("Leitura do QR code interrompida");
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw new IllegalStateException(exception.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String decodeFrame(byte[] frame) {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(
+                new BufferedImageLuminanceSource(readRegionOfInterest(frame))));
+
+        // Never empty: there are as many readers as threads, and only the pool's threads borrow them
+        QRCodeReader reader = readers.remove();
+
+        try {
+            return reader.decode(bitmap, HINTS).getText();
+        } catch (NotFoundException | ChecksumException | FormatException exception) {
+            throw new UnreadableFrameException("Nenhum QR code encontrado na imagem");
+        } finally {
+            reader.reset();
+            readers.add(reader);
+        }
+    }
+
+    /**
+     * Reads only the region of interest of the frame, keeping one pixel out of every few in each direction so its
+     * longest side fits {@code maxDimension}.
+     */
+    private BufferedImage readRegionOfInterest(byte[] frame) {
+        // An in-memory stream, since ImageIO would otherwise cache every frame in a temporary file
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(frame))) {
+            Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(input);
+
+            if (!imageReaders.hasNext()) {
+                throw new UnreadableFrameException("Imagem inválida; envie um quadro JPEG ou PNG");
+            }
+
+            ImageReader imageReader = imageReaders.next();
+
+            try {
+                imageReader.setInput(input, true, true);
+
+                int width = imageReader.getWidth(0);
+                int height = imageReader.getHeight(0);
+                int regionWidth = Math.max(1, (int) Math.round(width * regionOfInterest));
+                int regionHeight = Math.max(1, (int) Math.round(height * regionOfInterest));
+                int subsampling = Math.max(1, (Math.max(regionWidth, regionHeight) + maxDimension - 1) / maxDimension);
+
+                ImageReadParam param = imageReader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - regionWidth) / 2, (height - regionHeight) / 2,
+                        regionWidth, regionHeight));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return imageReader.read(0, param);
+            } finally {
+                imageReader.dispose();
+            }
+        } catch (IOException exception) {
+            throw new UnreadableFrameException("Imagem inválida; envie um quadro JPEG ou PNG");
+        }
+    }
+}
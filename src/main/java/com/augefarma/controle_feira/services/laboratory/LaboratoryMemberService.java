@@ -1,20 +1,22 @@
 package com.augefarma.controle_feira.services.laboratory;
 
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
 import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberDto;
 import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
 import com.augefarma.controle_feira.entities.laboratory.LaboratoryEntity;
 import com.augefarma.controle_feira.entities.laboratory.LaboratoryMemberEntity;
+import com.augefarma.controle_feira.enums.ParticipantType;
 import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
 import com.augefarma.controle_feira.repositories.laboratory.LaboratoryMemberRepository;
 import com.augefarma.controle_feira.repositories.laboratory.LaboratoryRepository;
 import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
-import com.augefarma.controle_feira.services.badge.BadgeService;
-import com.google.zxing.WriterException;
+import com.augefarma.controle_feira.services.badge.BadgeCacheService;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,16 +26,19 @@ public class LaboratoryMemberService {
     private final LaboratoryMemberRepository laboratoryMemberRepository;
     private final LaboratoryRepository laboratoryRepository;
     private final ParticipantRepository participantRepository;
-    private final BadgeService badgeService;
+    private final BadgeCacheService badgeCacheService;
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService;
 
     @Autowired
     public LaboratoryMemberService(LaboratoryMemberRepository laboratoryMemberRepository,
                                    LaboratoryRepository laboratoryRepository,
-                                   ParticipantRepository participantRepository, BadgeService badgeService) {
+                                   ParticipantRepository participantRepository, BadgeCacheService badgeCacheService,
+                                   ParticipantSnapshotCacheService participantSnapshotCacheService) {
         this.laboratoryMemberRepository = laboratoryMemberRepository;
         this.laboratoryRepository = laboratoryRepository;
         this.participantRepository = participantRepository;
-        this.badgeService = badgeService;
+        this.badgeCacheService = badgeCacheService;
+        this.participantSnapshotCacheService = participantSnapshotCacheService;
     }
 
     /**
@@ -60,6 +65,9 @@ public class LaboratoryMemberService {
         // Save the laboratory member entity to the repository
         participantRepository.save(laboratoryMember);
 
+        // Drop any stale snapshot cached for this CPF
+        participantSnapshotCacheService.invalidate(laboratoryMember.getCpf());
+
         // Return the saved entity as a response DTO
         return new LaboratoryMemberResponseDto(laboratoryMember);
     }
@@ -90,25 +98,25 @@ public class LaboratoryMemberService {
      * Generates a badge for a laboratory member by ID.
      *
      * @param laboratoryMemberId the ID of the laboratory member for which to generate the badge
-     * @return a byte array containing the badge in PDF format
+     * @return the badge in PDF format, rendered once the response is written, together with its content hash
      * @throws ResourceNotFoundException if the laboratory member is not found
-     * @throws RuntimeException if there is an error generating the badge
      */
     @Transactional(readOnly = true)
-    public byte[] generateLaboratoryMemberBadge(Long laboratoryMemberId) {
+    public CachedBadgeDto generateLaboratoryMemberBadge(Long laboratoryMemberId) {
 
         try {
             // Retrieve the laboratory member entity from the repository using the given ID
             LaboratoryMemberEntity laboratoryMember = laboratoryMemberRepository.getReferenceById(laboratoryMemberId);
 
-            // Generate and return the badge as a byte array
-            return badgeService.generateBadge(laboratoryMember);
+            BadgeDto badge = new BadgeDto(laboratoryMember.getId(), ParticipantType.LABORATORY_MEMBER,
+                    laboratoryMember.getLaboratory().getId(), laboratoryMember.getName(),
+                    laboratoryMember.getLaboratory().getCorporateReason(), laboratoryMember.getCpf());
+
+            // Return the cached badge; it is rendered, only if its content changed, after this transaction ends
+            return badgeCacheService.getBadge(badge);
         } catch (EntityNotFoundException exception) {
             // Throw a custom exception if the laboratory member is not found
             throw new ResourceNotFoundException("Membro de laboratório não encontrado");
-        } catch (IOException | WriterException e) {
-            // Throw a runtime exception if there is an error generating the badge
-            throw new RuntimeException(e);
         }
     }
 
@@ -146,6 +154,8 @@ public class LaboratoryMemberService {
     public void deleteLaboratoryMember(Long laboratoryMemberId) {
         try {
             laboratoryMemberRepository.deleteById(laboratoryMemberId);
+            participantSnapshotCacheService.invalidateParticipant(laboratoryMemberId);
+            badgeCacheService.invalidateParticipant(laboratoryMemberId);
         } catch (EntityNotFoundException exception) {
             throw new ResourceNotFoundException("Membro de laboratório não encontrado");
         }
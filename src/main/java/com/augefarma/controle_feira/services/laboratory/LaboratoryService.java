@@ -6,7 +6,9 @@ import com.augefarma.controle_feira.dtos.laboratory.LaboratoryResponseDto;
 import com.augefarma.controle_feira.entities.laboratory.LaboratoryEntity;
 import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
 import com.augefarma.controle_feira.repositories.laboratory.LaboratoryRepository;
+import com.augefarma.controle_feira.services.badge.BadgeCacheService;
 import com.augefarma.controle_feira.services.badge.BadgeService;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,10 +20,16 @@ import java.util.List;
 public class LaboratoryService {
 
     private final LaboratoryRepository laboratoryRepository;
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService;
+    private final BadgeCacheService badgeCacheService;
 
     @Autowired
-    public LaboratoryService(LaboratoryRepository laboratoryRepository, BadgeService badgeService) {
+    public LaboratoryService(LaboratoryRepository laboratoryRepository, BadgeService badgeService,
+                             ParticipantSnapshotCacheService participantSnapshotCacheService,
+                             BadgeCacheService badgeCacheService) {
         this.laboratoryRepository = laboratoryRepository;
+        this.participantSnapshotCacheService = participantSnapshotCacheService;
+        this.badgeCacheService = badgeCacheService;
     }
 
     /**
@@ -57,6 +65,8 @@ public class LaboratoryService {
     public void deleteLaboratory(Long laboratoryId) {
         try {
             laboratoryRepository.deleteById(laboratoryId);
+            participantSnapshotCacheService.invalidateLaboratory(laboratoryId);
+            badgeCacheService.invalidateLaboratory(laboratoryId);
         } catch (EntityNotFoundException exception) {
             throw new ResourceNotFoundException("Laboratório não encontrado");
         }
@@ -0,0 +1,295 @@
+package com.augefarma.controle_feira.services.participant;
+
+import com.augefarma.controle_feira.dtos.participant.ParticipantCacheStatisticsDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of participant snapshots keyed by CPF, and indexed by participant ID for badges whose QR code
+ * carries a signed token, so that gate scans resolve a participant without a database round trip.
+ * <p>
+ * Invalidations take effect once the transaction changing the participant commits. Each one bumps a generation
+ * counter, and a snapshot loaded while the generation changed is not kept, since it may have been read before the
+ * change.
+ */
+@Slf4j
+@Service
+public class ParticipantSnapshotCacheService {
+
+    private final ParticipantRepository participantRepository;
+    private final AfterCommitExecutor afterCommitExecutor;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Cache<String, ParticipantSnapshotDto> snapshotsByCpf;
+
+    // CPF of every cached snapshot by participant ID
+    private final ConcurrentHashMap<Long, String> cpfsById = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ParticipantSnapshotCacheService(ParticipantRepository participantRepository,
+                                           AfterCommitExecutor afterCommitExecutor,
+                                           @Value("${participant.cache.max-size:20000}") int maxSize) {
+        this.participantRepository = participantRepository;
+        this.afterCommitExecutor = afterCommitExecutor;
+        this.maxSize = maxSize;
+        this.snapshotsByCpf = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .<String, ParticipantSnapshotDto>evictionListener((cpf, snapshot, cause) -> {
+                    evictions.incrementAndGet();
+                    cpfsById.remove(snapshot.id(), cpf);
+                })
+                .build();
+    }
+
+    /**
+     * Loads participant snapshots into the cache once the application is ready, up to the cache capacity.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        long loadGeneration = generation.get();
+        int loaded = 0;
+
+        for (var projection : participantRepository.findSnapshots(maxSize)) {
+            put(new ParticipantSnapshotDto(projection), loadGeneration);
+            loaded++;
+        }
+
+        log.info("Cache de participantes aquecido com {} registros em {} ms", loaded,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Finds a participant snapshot by CPF, loading it from the database on a cache miss.
+     *
+     * @param cpf the CPF of the participant
+     * @return the participant snapshot, or an empty Optional if no participant has that CPF
+     */
+    public Optional<ParticipantSnapshotDto> findByCpf(String cpf) {
+        ParticipantSnapshotDto snapshot = snapshotsByCpf.getIfPresent(cpf);
+
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return Optional.of(snapshot);
+        }
+
+        misses.incrementAndGet();
+
+        long loadGeneration = generation.get();
+        Optional<ParticipantSnapshotDto> loaded = participantRepository.findSnapshotByCpf(cpf)
+                .map(ParticipantSnapshotDto::new);
+        loaded.ifPresent(found -> put(found, loadGeneration));
+
+        return loaded;
+    }
+
+    /**
+     * Finds a participant snapshot by ID, loading it from the database on a cache miss.
+     *
+     * @param participantId the ID of the participant
+     * @return the participant snapshot, or an empty Optional if no participant has that ID
+     */
+    public Optional<ParticipantSnapshotDto> findById(Long participantId) {
+        ParticipantSnapshotDto snapshot = getById(participantId);
+
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return Optional.of(snapshot);
+        }
+
+        misses.incrementAndGet();
+
+        long loadGeneration = generation.get();
+        Optional<ParticipantSnapshotDto> loaded = participantRepository.findSnapshotById(participantId)
+                .map(ParticipantSnapshotDto::new);
+        loaded.ifPresent(found -> put(found, loadGeneration));
+
+        return loaded;
+    }
+
+    /**
+     * Finds participant snapshots for several IDs, loading every cache miss with a single query.
+     *
+     * @param participantIds the IDs to resolve
+     * @return the snapshots found, keyed by ID
+     */
+    public Map<Long, ParticipantSnapshotDto> findAllById(Collection<Long> participantIds) {
+        Map<Long, ParticipantSnapshotDto> found = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+
+        for (Long participantId : participantIds) {
+            ParticipantSnapshotDto snapshot = participantId != null ? getById(participantId) : null;
+
+            if (snapshot != null) {
+                hits.incrementAndGet();
+                found.put(participantId, snapshot);
+            } else if (participantId != null) {
+                misses.incrementAndGet();
+                missing.add(participantId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+
+            participantRepository.findSnapshotsByIdIn(missing).stream()
+                    .map(ParticipantSnapshotDto::new)
+                    .forEach(snapshot -> {
+                        put(snapshot, loadGeneration);
+                        found.put(snapshot.id(), snapshot);
+                    });
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds participant snapshots for several CPFs, loading every cache miss with a single query.
+     *
+     * @param cpfs the CPFs to resolve
+     * @return the snapshots found, keyed by CPF
+     */
+    public Map<String, ParticipantSnapshotDto> findAllByCpf(Collection<String> cpfs) {
+        Map<String, ParticipantSnapshotDto> found = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+
+        for (String cpf : cpfs) {
+            ParticipantSnapshotDto snapshot = cpf != null ? snapshotsByCpf.getIfPresent(cpf) : null;
+
+            if (snapshot != null) {
+                hits.incrementAndGet();
+                found.put(cpf, snapshot);
+            } else if (cpf != null) {
+                misses.incrementAndGet();
+                missing.add(cpf);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+
+            participantRepository.findSnapshotsByCpfIn(missing).stream()
+                    .map(ParticipantSnapshotDto::new)
+                    .forEach(snapshot -> {
+                        put(snapshot, loadGeneration);
+                        found.put(snapshot.cpf(), snapshot);
+                    });
+        }
+
+        return found;
+    }
+
+    /**
+     * Removes the snapshot cached for a CPF once the current transaction commits.
+     */
+    public void invalidate(String cpf) {
+        afterCommitExecutor.execute(() -> {
+            generation.incrementAndGet();
+
+            ParticipantSnapshotDto removed = snapshotsByCpf.asMap().remove(cpf);
+
+            if (removed != null) {
+                cpfsById.remove(removed.id(), cpf);
+            }
+        });
+    }
+
+    /**
+     * Removes the snapshot cached for a participant ID once the current transaction commits.
+     */
+    public void invalidateParticipant(Long participantId) {
+        afterCommitExecutor.execute(() -> {
+            generation.incrementAndGet();
+
+            String cpf = cpfsById.remove(participantId);
+
+            if (cpf != null) {
+                snapshotsByCpf.invalidate(cpf);
+            }
+        });
+    }
+
+    /**
+     * Removes the snapshots cached for every member of a laboratory once the current transaction commits.
+     */
+    public void invalidateLaboratory(Long laboratoryId) {
+        afterCommitExecutor.execute(() -> {
+            generation.incrementAndGet();
+
+            snapshotsByCpf.asMap().values().removeIf(snapshot -> {
+                if (!Objects.equals(snapshot.laboratoryId(), laboratoryId)) {
+                    return false;
+                }
+
+                cpfsById.remove(snapshot.id(), snapshot.cpf());
+                return true;
+            });
+        });
+    }
+
+    public ParticipantCacheStatisticsDto getStatistics() {
+        return new ParticipantCacheStatisticsDto(hits.get(), misses.get(), evictions.get(),
+                (int) snapshotsByCpf.estimatedSize(), maxSize);
+    }
+
+    private ParticipantSnapshotDto getById(Long participantId) {
+        String cpf = cpfsById.get(participantId);
+        ParticipantSnapshotDto snapshot = cpf != null ? snapshotsByCpf.getIfPresent(cpf) : null;
+
+        // The index and the cache are updated one after the other, so the CPF may have just moved to someone else
+        return snapshot != null && snapshot.id().equals(participantId) ? snapshot : null;
+    }
+
+    /**
+     * Caches a snapshot loaded from the database, unless an invalidation ran since the load started.
+     *
+     * @param loadGeneration the generation read before the snapshot was loaded
+     */
+    private void put(ParticipantSnapshotDto snapshot, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+
+        ParticipantSnapshotDto previous = snapshotsByCpf.asMap().put(snapshot.cpf(), snapshot);
+        String previousCpf = cpfsById.put(snapshot.id(), snapshot.cpf());
+
+        // The participant's CPF changed since it was cached
+        if (previousCpf != null && !previousCpf.equals(snapshot.cpf())) {
+            snapshotsByCpf.asMap().remove(previousCpf);
+        }
+
+        // The CPF belonged to another participant when it was cached
+        if (previous != null && !Objects.equals(previous.id(), snapshot.id())) {
+            cpfsById.remove(previous.id(), snapshot.cpf());
+        }
+
+        // An invalidation ran while the snapshot was being cached, and may have missed it
+        if (generation.get() != loadGeneration) {
+            snapshotsByCpf.asMap().remove(snapshot.cpf(), snapshot);
+            cpfsById.remove(snapshot.id(), snapshot.cpf());
+        }
+    }
+}
@@ -1,18 +1,20 @@
 package com.augefarma.controle_feira.services.pharmacy_representative;
 
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
 import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeDto;
 import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
 import com.augefarma.controle_feira.entities.pharmacy_representative.PharmacyRepresentativeEntity;
+import com.augefarma.controle_feira.enums.ParticipantType;
 import com.augefarma.controle_feira.exceptions.ResourceNotFoundException;
 import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
 import com.augefarma.controle_feira.repositories.pharmacy_representative.PharmacyRepresentativeRepository;
-import com.augefarma.controle_feira.services.badge.BadgeService;
-import com.google.zxing.WriterException;
+import com.augefarma.controle_feira.services.badge.BadgeCacheService;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,15 +23,18 @@ public class PharmacyRepresentativeService {
 
     private final PharmacyRepresentativeRepository pharmacyRepresentativeRepository;
     private final ParticipantRepository participantRepository;
-    private final BadgeService badgeService;
+    private final BadgeCacheService badgeCacheService;
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService;
 
     @Autowired
     public PharmacyRepresentativeService(PharmacyRepresentativeRepository pharmacyRepresentativeRepository,
                                          ParticipantRepository participantRepository,
-                                         BadgeService badgeService) {
+                                         BadgeCacheService badgeCacheService,
+                                         ParticipantSnapshotCacheService participantSnapshotCacheService) {
         this.pharmacyRepresentativeRepository = pharmacyRepresentativeRepository;
         this.participantRepository = participantRepository;
-        this.badgeService = badgeService;
+        this.badgeCacheService = badgeCacheService;
+        this.participantSnapshotCacheService = participantSnapshotCacheService;
     }
 
     /**
@@ -55,6 +60,9 @@ public class PharmacyRepresentativeService {
         // Save the pharmacyRepresentative entity to the repository
         participantRepository.save(pharmacyRepresentative);
 
+        // Drop any stale snapshot cached for this CPF
+        participantSnapshotCacheService.invalidate(pharmacyRepresentative.getCpf());
+
         // Return a response DTO containing the saved pharmacyRepresentative information
         return new PharmacyRepresentativeResponseDto(pharmacyRepresentative);
     }
@@ -86,26 +94,26 @@ public class PharmacyRepresentativeService {
      * Generates a badge for a client by their ID.
      *
      * @param pharmacyRepresentativeId the ID of the client for whom to generate the badge
-     * @return a byte array representing the generated badge
+     * @return the badge, rendered once the response is written, together with its content hash
      * @throws ResourceNotFoundException if the client with the given ID is not found
-     * @throws RuntimeException if an error occurs during badge generation
      */
     @Transactional(readOnly = true)
-    public byte[] generatePharmacyRepresentativeBadge(Long pharmacyRepresentativeId) {
+    public CachedBadgeDto generatePharmacyRepresentativeBadge(Long pharmacyRepresentativeId) {
 
         try {
             // Attempt to retrieve the pharmacyRepresentative entity from the repository using the given ID
             PharmacyRepresentativeEntity pharmacyRepresentative = pharmacyRepresentativeRepository
                     .getReferenceById(pharmacyRepresentativeId);
 
-            // Generate the badge for the pharmacyRepresentative and return it as a byte array
-            return badgeService.generateBadge(pharmacyRepresentative);
+            BadgeDto badge = new BadgeDto(pharmacyRepresentative.getId(),
+                    ParticipantType.PHARMACY_REPRESENTATIVE, null, pharmacyRepresentative.getName(),
+                    pharmacyRepresentative.getCorporateReason(), pharmacyRepresentative.getCpf());
+
+            // Return the cached badge; it is rendered, only if its content changed, after this transaction ends
+            return badgeCacheService.getBadge(badge);
         } catch (EntityNotFoundException exception) {
             // If the client entity is not found, throw a custom exception indicating the resource is not found
             throw new ResourceNotFoundException("Representante de farmácia não encontrado");
-        } catch (IOException | WriterException e) {
-            // If an error occurs during badge generation, throw a runtime exception
-            throw new RuntimeException(e);
         }
     }
 
@@ -154,6 +162,8 @@ public class PharmacyRepresentativeService {
     public void deletePharmacyRepresentative(Long pharmacyRepresentativeId) {
         try {
             pharmacyRepresentativeRepository.deleteById(pharmacyRepresentativeId);
+            participantSnapshotCacheService.invalidateParticipant(pharmacyRepresentativeId);
+            badgeCacheService.invalidateParticipant(pharmacyRepresentativeId);
         }catch (EntityNotFoundException exception) {
             throw new ResourceNotFoundException("Representante de farmácia não encontrado");
         }
@@ -0,0 +1,48 @@
+package com.augefarma.controle_feira.services.socket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts arrivals in fixed-width time buckets over a rolling window. Buckets are reused once they fall out of the
+ * window, so memory stays constant however long the event runs.
+ */
+class ArrivalRingBuffer {
+
+    private final long bucketMillis;
+    private final long[] counts;
+    private final long[] bucketNumbers;
+
+    ArrivalRingBuffer(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.counts = new long[buckets];
+        this.bucketNumbers = new long[buckets];
+    }
+
+    synchronized void record(long epochMillis) {
+        long bucketNumber = epochMillis / bucketMillis;
+        int index = (int) (bucketNumber % counts.length);
+
+        if (bucketNumbers[index] != bucketNumber) {
+            bucketNumbers[index] = bucketNumber;
+            counts[index] = 0;
+        }
+
+        counts[index]++;
+    }
+
+    /**
+     * Returns the count of every bucket in the window ending at the given time, oldest first.
+     */
+    synchronized List<Long> counts(long epochMillis) {
+        long currentBucket = epochMillis / bucketMillis;
+        List<Long> window = new ArrayList<>(counts.length);
+
+        for (long bucketNumber = currentBucket - counts.length + 1; bucketNumber <= currentBucket; bucketNumber++) {
+            int index = (int) (bucketNumber % counts.length);
+            window.add(bucketNumbers[index] == bucketNumber ? counts[index] : 0L);
+        }
+
+        return window;
+    }
+}
@@ -0,0 +1,165 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.event.HeadcountUpdateEventDto;
+import com.augefarma.controle_feira.dtos.event.ListUpdateEventDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceDeltaDto;
+import com.augefarma.controle_feira.dtos.real_time.RealTimeMetricsDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChange;
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChangeBatch;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces presence changes into at most one broadcast per tick. The first change after an idle period is sent
+ * right away; changes arriving while a broadcast was sent less than a tick ago are merged into the next one.
+ */
+@Slf4j
+@Component
+public class PresenceBroadcastScheduler {
+
+    private final PresenceRegistry presenceRegistry;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final PresenceHeadcount presenceHeadcount;
+    private final long tickNanos;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean broadcastScheduled = new AtomicBoolean();
+    private volatile long lastBroadcastNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    private final AtomicLong pendingUpdates = new AtomicLong();
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong updatesMerged = new AtomicLong();
+    private final AtomicLong maxUpdatesInOneBroadcast = new AtomicLong();
+
+    // Last sequence sent on each topic; only touched by the broadcast thread
+    private Long lastSequence;
+    private final Map<EventSegment, Long> lastSegmentSequences = new EnumMap<>(EventSegment.class);
+    private final Map<Long, Long> lastLaboratorySequences = new HashMap<>();
+
+    @Autowired
+    public PresenceBroadcastScheduler(PresenceRegistry presenceRegistry,
+                                      ApplicationEventPublisher applicationEventPublisher,
+                                      PresenceHeadcount presenceHeadcount,
+                                      @Value("${realtime.broadcast.tick-ms:200}") long tickMs) {
+        this.presenceRegistry = presenceRegistry;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.presenceHeadcount = presenceHeadcount;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Signals that the presence registry changed and a broadcast is due.
+     */
+    public void markDirty() {
+        pendingUpdates.incrementAndGet();
+
+        if (broadcastScheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastBroadcastNanos + tickNanos - System.nanoTime());
+            executor.schedule(this::broadcast, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public RealTimeMetricsDto getMetrics() {
+        long broadcastCount = broadcasts.get();
+        long mergedCount = updatesMerged.get();
+
+        return new RealTimeMetricsDto(TimeUnit.NANOSECONDS.toMillis(tickNanos), broadcastCount, mergedCount,
+                maxUpdatesInOneBroadcast.get(), broadcastCount == 0 ? 0 : (double) mergedCount / broadcastCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends the arrivals and departures to the topic of everyone present; a batch where participants only entered
+     * more segments sends nothing there, and the next delta continues from the last one sent.
+     */
+    private void publishDelta(PresenceChangeBatch batch) {
+        PresenceDeltaDto delta = batch.toDelta(lastSequence != null ? lastSequence : batch.fromSequence(),
+                PresenceChange::isAttendanceChange);
+
+        if (delta != null) {
+            applicationEventPublisher.publishEvent(new ListUpdateEventDto(this, delta));
+            lastSequence = batch.sequence();
+        }
+    }
+
+    /**
+     * Sends each segment and laboratory topic only the changes it shows. Every topic chains its own deltas, so a
+     * topic that was not affected for a while doesn't look like a gap to its subscribers.
+     */
+    private void publishScopedDeltas(PresenceChangeBatch batch) {
+        Set<EventSegment> segments = new LinkedHashSet<>();
+        Set<Long> laboratoryIds = new LinkedHashSet<>();
+
+        for (PresenceChange change : batch.changes()) {
+            segments.addAll(change.segments());
+
+            if (change.laboratoryId() != null && change.isAttendanceChange()) {
+                laboratoryIds.add(change.laboratoryId());
+            }
+        }
+
+        for (EventSegment segment : segments) {
+            PresenceDeltaDto delta = batch.toDelta(lastSegmentSequences.getOrDefault(segment, 0L),
+                    change -> change.segments().contains(segment));
+            applicationEventPublisher.publishEvent(new ListUpdateEventDto(this, delta, segment, null));
+            lastSegmentSequences.put(segment, batch.sequence());
+        }
+
+        for (Long laboratoryId : laboratoryIds) {
+            PresenceDeltaDto delta = batch.toDelta(lastLaboratorySequences.getOrDefault(laboratoryId, 0L),
+                    change -> change.isAttendanceChange() && laboratoryId.equals(change.laboratoryId()));
+            applicationEventPublisher.publishEvent(new ListUpdateEventDto(this, delta, null, laboratoryId));
+            lastLaboratorySequences.put(laboratoryId, batch.sequence());
+        }
+    }
+
+    private void broadcast() {
+        // Cleared before draining, so a change made during the broadcast schedules the next one
+        broadcastScheduled.set(false);
+
+        try {
+            PresenceChangeBatch batch = presenceRegistry.drainChanges();
+            long updates = pendingUpdates.getAndSet(0);
+
+            if (batch == null) {
+                return;
+            }
+
+            publishDelta(batch);
+            publishScopedDeltas(batch);
+            applicationEventPublisher.publishEvent(new HeadcountUpdateEventDto(this, presenceHeadcount.getHeadcount()));
+
+            broadcasts.incrementAndGet();
+            updatesMerged.addAndGet(updates);
+            maxUpdatesInOneBroadcast.accumulateAndGet(updates, Math::max);
+        } catch (RuntimeException exception) {
+            log.error("Falha ao transmitir atualização de presença", exception);
+        } finally {
+            lastBroadcastNanos = System.nanoTime();
+        }
+    }
+}
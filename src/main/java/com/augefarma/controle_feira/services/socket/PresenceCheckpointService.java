@@ -0,0 +1,154 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.PresenceCheckpointDto;
+import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
+import com.augefarma.controle_feira.repositories.entry_exit.ExitRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodically writes the presence registry to a gzipped JSON file, so a restart can load it and replay only the
+ * scans made afterwards. The file is replaced atomically, so a crash mid-write leaves the previous checkpoint intact.
+ * <p>
+ * Each checkpoint records the highest entry and exit record IDs read one interval earlier; a restart replays every
+ * record above them. The watermarks are safe as long as every record at or below them belongs to a scan the export
+ * already reflects. Written synchronously, a record commits with its scan and reaches the registry right after, in
+ * the same thread, so the IDs read at the same moment could cover scans the export misses, but not IDs read a whole
+ * interval earlier. With the write-behind journal a record is only written after its scan reached the registry,
+ * possibly much later, so it gets an ID above the watermarks and is replayed. Replaying records whose scans the
+ * checkpoint already reflects is harmless.
+ */
+@Slf4j
+@Component
+public class PresenceCheckpointService {
+
+    private final PresenceRegistry presenceRegistry;
+    private final EntryRecordRepository entryRecordRepository;
+    private final ExitRecordRepository exitRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path checkpointPath;
+    private final long intervalMs;
+
+    private ScheduledExecutorService writer;
+    private long checkpointedVersion = -1;
+
+    // Read at the previous tick; zero until then, so the first checkpoint replays every record of the day
+    private RecordWatermarks previousWatermarks = new RecordWatermarks(0, 0);
+
+    @Autowired
+    public PresenceCheckpointService(PresenceRegistry presenceRegistry, EntryRecordRepository entryRecordRepository,
+                                     ExitRecordRepository exitRecordRepository, ObjectMapper objectMapper,
+                                     @Value("${realtime.checkpoint.enabled:true}") boolean enabled,
+                                     @Value("${realtime.checkpoint.path:${java.io.tmpdir}/controle-feira/"
+                                             + "presence-checkpoint.json.gz}") String checkpointPath,
+                                     @Value("${realtime.checkpoint.interval-ms:15000}") long intervalMs) {
+        this.presenceRegistry = presenceRegistry;
+        this.entryRecordRepository = entryRecordRepository;
+        this.exitRecordRepository = exitRecordRepository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.checkpointPath = Path.of(checkpointPath);
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Loads the last checkpoint written.
+     *
+     * @return the checkpoint, or an empty Optional if checkpointing is disabled, no file exists or it is unreadable
+     */
+    public Optional<PresenceCheckpointDto> load() {
+        if (!enabled || !Files.exists(checkpointPath)) {
+            return Optional.empty();
+        }
+
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(checkpointPath))) {
+            return Optional.of(objectMapper.readValue(input, PresenceCheckpointDto.class));
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Checkpoint de presença ilegível em {}; ignorando", checkpointPath, exception);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Starts writing checkpoints periodically. Called once the registry has been restored, so an empty registry
+     * never overwrites a good checkpoint during startup.
+     */
+    public synchronized void start() {
+        if (!enabled || writer != null) {
+            return;
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::checkpointSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+
+        // One last checkpoint so a planned restart replays almost nothing
+        checkpointSafely();
+    }
+
+    private void checkpointSafely() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException exception) {
+            log.error("Falha ao gravar o checkpoint de presença em {}", checkpointPath, exception);
+        }
+    }
+
+    private synchronized void checkpoint() throws IOException {
+        RecordWatermarks watermarks = previousWatermarks;
+        previousWatermarks = new RecordWatermarks(entryRecordRepository.findMaxId(), exitRecordRepository.findMaxId());
+
+        if (presenceRegistry.getVersion() == checkpointedVersion) {
+            return;
+        }
+
+        PresenceCheckpointDto checkpoint = presenceRegistry.export(LocalDateTime.now(), watermarks.entryRecordId(),
+                watermarks.exitRecordId());
+
+        Files.createDirectories(checkpointPath.toAbsolutePath().getParent());
+        Path temporaryPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(temporaryPath))) {
+            objectMapper.writeValue(output, checkpoint);
+        }
+
+        Files.move(temporaryPath, checkpointPath, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        checkpointedVersion = checkpoint.version();
+    }
+
+    private record RecordWatermarks(long entryRecordId, long exitRecordId) {
+    }
+}
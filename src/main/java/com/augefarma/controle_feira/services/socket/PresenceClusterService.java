@@ -0,0 +1,295 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.event.PresenceResyncEventDto;
+import com.augefarma.controle_feira.dtos.real_time.ClusterPresenceMessageDto;
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the presence registries of several application instances in sync through PostgreSQL LISTEN/NOTIFY. Every
+ * local change is notified on a shared channel; every instance applies the changes made by the others to its own
+ * registry, and its broadcast scheduler relays them to its own STOMP subscribers.
+ * <p>
+ * The registry only changes once the scan's transaction commits, and hands local changes to this service in version
+ * order. A single publisher thread notifies them in that order on its own autocommit connection, numbering them
+ * consecutively per instance. A receiver drops numbers it already applied; when it sees a gap, or its listening
+ * connection is re-established, it may have missed changes and recomputes presence from the database.
+ */
+@Slf4j
+@Component
+public class PresenceClusterService {
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceHeadcount presenceHeadcount;
+    private final PresenceBroadcastScheduler presenceBroadcastScheduler;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final boolean enabled;
+    private final String channel;
+    private final int pollTimeoutMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Local changes waiting to be notified, in version order
+    private final LinkedBlockingQueue<PresenceChange> outgoingChanges = new LinkedBlockingQueue<>();
+
+    // Only touched by the publisher thread
+    private long publishedSequence;
+
+    // Last sequence applied from each other instance; only touched by the listener thread
+    private final Map<String, Long> receivedSequences = new HashMap<>();
+
+    private volatile Connection listenConnection;
+    private Thread listener;
+    private Thread publisher;
+    private volatile boolean running;
+
+    @Autowired
+    public PresenceClusterService(DataSource dataSource, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                  PresenceRegistry presenceRegistry, PresenceHeadcount presenceHeadcount,
+                                  PresenceBroadcastScheduler presenceBroadcastScheduler,
+                                  ApplicationEventPublisher applicationEventPublisher,
+                                  @Value("${realtime.cluster.enabled:false}") boolean enabled,
+                                  @Value("${realtime.cluster.channel:presence_changes}") String channel,
+                                  @Value("${realtime.cluster.poll-timeout-ms:500}") int pollTimeoutMs) {
+        // The channel goes into LISTEN unquoted, so only plain identifiers are accepted
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Canal de presença inválido: " + channel);
+        }
+
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.presenceRegistry = presenceRegistry;
+        this.presenceHeadcount = presenceHeadcount;
+        this.presenceBroadcastScheduler = presenceBroadcastScheduler;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.pollTimeoutMs = pollTimeoutMs;
+    }
+
+    /**
+     * Starts listening on the channel. Called before presence is restored at startup, so changes the other instances
+     * make meanwhile are queued on the connection instead of lost.
+     */
+    public synchronized void subscribe() {
+        if (!enabled || listenConnection != null) {
+            return;
+        }
+
+        try {
+            listenConnection = openListenConnection();
+        } catch (SQLException exception) {
+            log.error("Falha ao escutar o canal de presença {}; tentando novamente em segundo plano", channel,
+                    exception);
+        }
+    }
+
+    /**
+     * Starts applying the changes received from the other instances and publishing local ones. Called once presence
+     * has been restored, so the restore itself is not echoed to the cluster.
+     */
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        running = true;
+        presenceRegistry.setLocalChangeListener(outgoingChanges::add);
+
+        listener = new Thread(this::listen, "presence-cluster-listener");
+        listener.setDaemon(true);
+        listener.start();
+
+        publisher = new Thread(this::publishChanges, "presence-cluster-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+
+        log.info("Sincronização de presença em cluster ativa no canal {} (nó {})", channel, nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        presenceRegistry.setLocalChangeListener(null);
+
+        if (publisher != null) {
+            publisher.join(pollTimeoutMs * 2L);
+        }
+
+        if (listener != null) {
+            listener.join(pollTimeoutMs * 2L);
+        }
+
+        closeListenConnection();
+    }
+
+    private void publishChanges() {
+        while (running) {
+            try {
+                PresenceChange change = outgoingChanges.poll(pollTimeoutMs, TimeUnit.MILLISECONDS);
+
+                if (change != null) {
+                    publish(change);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void publish(PresenceChange change) {
+        long sequence = ++publishedSequence;
+
+        try {
+            String payload = objectMapper.writeValueAsString(new ClusterPresenceMessageDto(nodeId, sequence, change));
+            jdbcTemplate.query(NOTIFY_SQL, resultSet -> null, channel, payload);
+        } catch (JsonProcessingException | RuntimeException exception) {
+            // The sequence is not reused, so the other instances see the gap and resynchronize
+            log.error("Falha ao notificar a alteração de presença do participante {} ao cluster",
+                    change.participantId(), exception);
+        }
+    }
+
+    private void listen() {
+        boolean reconnected = false;
+
+        while (running) {
+            try {
+                if (listenConnection == null) {
+                    listenConnection = openListenConnection();
+                }
+
+                // Changes notified while disconnected are lost, so they are read back from the database
+                if (reconnected) {
+                    reconnected = false;
+                    receivedSequences.clear();
+                    resync("conexão de escuta restabelecida");
+                }
+
+                PGNotification[] notifications = listenConnection.unwrap(PGConnection.class)
+                        .getNotifications(pollTimeoutMs);
+
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        applyNotification(notification.getParameter());
+                    }
+                }
+            } catch (SQLException exception) {
+                log.warn("Conexão de escuta do canal de presença {} perdida; reconectando", channel, exception);
+                reconnected = true;
+                closeListenConnection();
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void applyNotification(String payload) {
+        ClusterPresenceMessageDto message;
+
+        try {
+            message = objectMapper.readValue(payload, ClusterPresenceMessageDto.class);
+        } catch (JsonProcessingException exception) {
+            log.warn("Notificação de presença ilegível ignorada: {}", payload, exception);
+            return;
+        }
+
+        if (nodeId.equals(message.nodeId())) {
+            return;
+        }
+
+        Long lastSequence = receivedSequences.get(message.nodeId());
+
+        // Already applied
+        if (lastSequence != null && message.sequence() <= lastSequence) {
+            return;
+        }
+
+        receivedSequences.put(message.nodeId(), message.sequence());
+
+        // The missed changes, and this one, are already committed, so the database has them all
+        if (lastSequence != null && message.sequence() > lastSequence + 1) {
+            resync("alterações " + (lastSequence + 1) + " a " + (message.sequence() - 1) + " do nó "
+                    + message.nodeId() + " perdidas");
+            return;
+        }
+
+        // Empty when this instance already had the change, e.g. from its own restore
+        for (PresenceChange applied : presenceRegistry.applyRemote(message.change())) {
+            presenceHeadcount.apply(applied);
+            presenceBroadcastScheduler.markDirty();
+        }
+    }
+
+    private void resync(String reason) {
+        log.warn("Recalculando a presença a partir do banco de dados: {}", reason);
+
+        try {
+            applicationEventPublisher.publishEvent(new PresenceResyncEventDto(this, reason));
+        } catch (RuntimeException exception) {
+            log.error("Falha ao recalcular a presença a partir do banco de dados", exception);
+        }
+    }
+
+    private Connection openListenConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute("LISTEN " + channel);
+            return connection;
+        } catch (SQLException exception) {
+            connection.close();
+            throw exception;
+        }
+    }
+
+    private synchronized void closeListenConnection() {
+        if (listenConnection == null) {
+            return;
+        }
+
+        try {
+            listenConnection.close();
+        } catch (SQLException exception) {
+            log.debug("Falha ao fechar a conexão de escuta do canal de presença", exception);
+        }
+
+        listenConnection = null;
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.HeadcountDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChange;
+import org.springframework.stereotype.Component;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live occupancy counters, updated on every presence change instead of being recounted from the attendee list.
+ */
+@Component
+public class PresenceHeadcount {
+
+    private final LongAdder total = new LongAdder();
+    private final Map<EventSegment, LongAdder> bySegment = new EnumMap<>(EventSegment.class);
+    private final ConcurrentHashMap<Long, LongAdder> byLaboratory = new ConcurrentHashMap<>();
+    private final LongAdder pharmacyRepresentatives = new LongAdder();
+
+    private final ArrivalRingBuffer arrivalsPerMinute = new ArrivalRingBuffer(TimeUnit.MINUTES.toMillis(1), 60);
+    private final ArrivalRingBuffer arrivalsPerHour = new ArrivalRingBuffer(TimeUnit.HOURS.toMillis(1), 24);
+
+    public PresenceHeadcount() {
+        // Filled up front so the map is never written after construction
+        for (EventSegment segment : EventSegment.values()) {
+            bySegment.put(segment, new LongAdder());
+        }
+    }
+
+    /**
+     * Applies a change made to the presence registry. A participant counts once in the total, and once in every
+     * segment they entered through.
+     */
+    public void apply(PresenceChange change) {
+        long delta = change.isAddition() ? 1 : -1;
+
+        change.segments().forEach(segment -> bySegment.get(segment).add(delta));
+
+        if (!change.isAttendanceChange()) {
+            return;
+        }
+
+        total.add(delta);
+
+        if (change.laboratoryId() != null) {
+            byLaboratory.computeIfAbsent(change.laboratoryId(), laboratoryId -> new LongAdder()).add(delta);
+        } else {
+            pharmacyRepresentatives.add(delta);
+        }
+
+        if (change.arrival()) {
+            long now = System.currentTimeMillis();
+            arrivalsPerMinute.record(now);
+            arrivalsPerHour.record(now);
+        }
+    }
+
+    public HeadcountDto getHeadcount() {
+        Map<EventSegment, Long> segments = new EnumMap<>(EventSegment.class);
+        bySegment.forEach((segment, count) -> segments.put(segment, count.sum()));
+
+        Map<Long, Long> laboratories = new HashMap<>();
+        byLaboratory.forEach((laboratoryId, count) -> {
+            long sum = count.sum();
+            if (sum > 0) {
+                laboratories.put(laboratoryId, sum);
+            }
+        });
+
+        long now = System.currentTimeMillis();
+
+        return new HeadcountDto(total.sum(), segments,
+                pharmacyRepresentatives.sum(), laboratories, arrivalsPerMinute.counts(now),
+                arrivalsPerHour.counts(now));
+    }
+}
@@ -0,0 +1,502 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceCheckpointDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceDeltaDto;
+import com.augefarma.controle_feira.dtos.real_time.PresentParticipantDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import org.springframework.stereotype.Component;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Participants currently present at the fair, keyed by participant ID, each with the event segments they entered
+ * through since arriving. Adds and removes are constant time and may run in parallel; readers get an immutable
+ * snapshot tagged with the version of the last change it contains.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final int CHANGE_STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, PresentParticipantDto> pharmacyRepresentatives = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, PresentParticipantDto> laboratoryMembers = new ConcurrentHashMap<>();
+
+    // Changes share the read lock so they run in parallel; building the full snapshot or a checkpoint takes the
+    // write lock so it contains exactly the changes up to its version
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+
+    // Versions are assigned and changes logged under this monitor, so the log is always in version order
+    private final Object changeLogMonitor = new Object();
+
+    // Changes to one participant apply and log under the same stripe, so the log orders them as the maps applied
+    // them; changes to different participants commute and only share a stripe by chance
+    private final Object[] changeStripes = Stream.generate(Object::new).limit(CHANGE_STRIPES).toArray();
+    private final List<PresenceChange> pendingChanges = new ArrayList<>();
+    private long drainedVersion;
+
+    // Receives the changes made on this instance, in version order, once cluster synchronization starts
+    private volatile Consumer<PresenceChange> localChangeListener;
+
+    private volatile EntitiesListResponseDto snapshot = new EntitiesListResponseDto(List.of(), List.of(), 0);
+
+    // Scoped snapshots by segment and laboratory, each reused until the registry version moves on
+    private final ConcurrentHashMap<EventSegment, EntitiesListResponseDto> segmentSnapshots =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, EntitiesListResponseDto> laboratorySnapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Marks a pharmacy representative as present in a segment, adding the segment if they are already present.
+     *
+     * @param segment the event segment the representative entered through, or null if unknown
+     * @return the change made, or null if the representative was already present in that segment
+     */
+    public PresenceChange addPharmacyRepresentative(PharmacyRepresentativeResponseDto pharmacyRepresentative,
+                                                    EventSegment segment) {
+        PresentParticipantDto present = new PresentParticipantDto(pharmacyRepresentative.getId(), segments(segment),
+                null, pharmacyRepresentative, null);
+
+        return change(present.participantId(), () -> enter(pharmacyRepresentatives, present, segment));
+    }
+
+    /**
+     * Marks a pharmacy representative as no longer present.
+     *
+     * @return the change made, or null if the representative was not present
+     */
+    public PresenceChange removePharmacyRepresentative(Long pharmacyRepresentativeId) {
+        return change(pharmacyRepresentativeId,
+                () -> removed(pharmacyRepresentatives.remove(pharmacyRepresentativeId)));
+    }
+
+    /**
+     * Marks a laboratory member as present in a segment, adding the segment if they are already present.
+     *
+     * @param laboratoryId the ID of the member's laboratory
+     * @param segment      the event segment the member entered through, or null if unknown
+     * @return the change made, or null if the member was already present in that segment
+     */
+    public PresenceChange addLaboratoryMember(LaboratoryMemberResponseDto laboratoryMember, Long laboratoryId,
+                                              EventSegment segment) {
+        PresentParticipantDto present = new PresentParticipantDto(laboratoryMember.getId(), segments(segment),
+                laboratoryId, null, laboratoryMember);
+
+        return change(present.participantId(), () -> enter(laboratoryMembers, present, segment));
+    }
+
+    /**
+     * Marks a laboratory member as no longer present.
+     *
+     * @return the change made, or null if the member was not present
+     */
+    public PresenceChange removeLaboratoryMember(Long laboratoryMemberId) {
+        return change(laboratoryMemberId, () -> removed(laboratoryMembers.remove(laboratoryMemberId)));
+    }
+
+    /**
+     * Adds a segment to a participant already present, leaving absent participants alone.
+     *
+     * @return the change made, or null if the participant is absent or already present in that segment
+     */
+    public PresenceChange enterSegment(Long participantId, EventSegment segment) {
+        return change(participantId, () -> {
+            PresenceChange entered = extend(pharmacyRepresentatives, participantId, segment);
+            return entered != null ? entered : extend(laboratoryMembers, participantId, segment);
+        });
+    }
+
+    /**
+     * Puts back a participant restored from a checkpoint, with every segment they had entered through.
+     *
+     * @return the change made, or null if the participant was already present
+     */
+    public PresenceChange restore(PresentParticipantDto present) {
+        ConcurrentHashMap<Long, PresentParticipantDto> participants = present.pharmacyRepresentative() != null
+                ? pharmacyRepresentatives : laboratoryMembers;
+
+        // Checkpoints written before segments were tracked per participant have none
+        PresentParticipantDto restored = present.segments() != null ? present
+                : new PresentParticipantDto(present.participantId(), Set.of(), present.laboratoryId(),
+                        present.pharmacyRepresentative(), present.laboratoryMember());
+
+        return change(restored.participantId(),
+                () -> participants.putIfAbsent(restored.participantId(), restored) == null
+                        ? new PresenceChange(restored.participantId(), restored.segments(), restored.laboratoryId(),
+                                restored.pharmacyRepresentative(), restored.laboratoryMember(), true)
+                        : null);
+    }
+
+    /**
+     * Applies a change made by another instance. It is logged for the local subscribers but not handed to the local
+     * change listener, so it is never echoed back to the cluster.
+     *
+     * @return the changes this registry did not have yet
+     */
+    public List<PresenceChange> applyRemote(PresenceChange change) {
+        if (!change.isAddition()) {
+            PresenceChange removed = change(change.participantId(),
+                    () -> removed(pharmacyRepresentatives.remove(change.participantId())), false);
+
+            if (removed == null) {
+                removed = change(change.participantId(),
+                        () -> removed(laboratoryMembers.remove(change.participantId())), false);
+            }
+
+            return removed != null ? List.of(removed) : List.of();
+        }
+
+        List<PresenceChange> applied = new ArrayList<>();
+
+        // An arrival with no known segment still marks the participant present
+        List<EventSegment> segments = change.segments().isEmpty()
+                ? Collections.singletonList(null) : List.copyOf(change.segments());
+
+        for (EventSegment segment : segments) {
+            PresentParticipantDto arriving = new PresentParticipantDto(change.participantId(), segments(segment),
+                    change.laboratoryId(), change.pharmacyRepresentative(), change.laboratoryMember());
+            ConcurrentHashMap<Long, PresentParticipantDto> participants = change.pharmacyRepresentative() != null
+                    ? pharmacyRepresentatives : laboratoryMembers;
+            PresenceChange entered = change(change.participantId(),
+                    () -> enter(participants, arriving, segment), false);
+
+            if (entered != null) {
+                applied.add(entered);
+            }
+        }
+
+        return applied;
+    }
+
+    /**
+     * Sets who receives the changes made on this instance. Called under the change log lock, in version order, so it
+     * must only hand the change off.
+     */
+    public void setLocalChangeListener(Consumer<PresenceChange> localChangeListener) {
+        this.localChangeListener = localChangeListener;
+    }
+
+    /**
+     * Returns the IDs of every participant present.
+     */
+    public Set<Long> getPresentParticipantIds() {
+        Set<Long> participantIds = new HashSet<>(pharmacyRepresentatives.keySet());
+        participantIds.addAll(laboratoryMembers.keySet());
+
+        return participantIds;
+    }
+
+    public boolean isPresent(Long participantId) {
+        return pharmacyRepresentatives.containsKey(participantId) || laboratoryMembers.containsKey(participantId);
+    }
+
+    /**
+     * Returns an immutable snapshot of everyone present, rebuilding it only if something changed since the last one.
+     */
+    public EntitiesListResponseDto snapshot() {
+        EntitiesListResponseDto current = snapshot;
+
+        if (current.getVersion() == version.get()) {
+            return current;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (snapshot.getVersion() != version.get()) {
+                snapshot = buildSnapshot(present -> true, version.get());
+            }
+            return snapshot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the participants who entered through the given segment, rebuilding it only if something
+     * changed since it was last requested.
+     */
+    public EntitiesListResponseDto snapshotForSegment(EventSegment segment) {
+        return scopedSnapshot(segmentSnapshots, segment, present -> present.segments().contains(segment));
+    }
+
+    /**
+     * Returns a snapshot of the present members of the given laboratory, rebuilding it only if something changed
+     * since it was last requested.
+     */
+    public EntitiesListResponseDto snapshotForLaboratory(Long laboratoryId) {
+        return scopedSnapshot(laboratorySnapshots, laboratoryId,
+                present -> Objects.equals(present.laboratoryId(), laboratoryId));
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns everyone present together with the version they reflect, for checkpointing.
+     *
+     * @param entryRecordWatermark highest entry record ID whose scan is certainly reflected in the registry
+     * @param exitRecordWatermark  highest exit record ID whose scan is certainly reflected in the registry
+     */
+    public PresenceCheckpointDto export(LocalDateTime takenAt, long entryRecordWatermark, long exitRecordWatermark) {
+        lock.writeLock().lock();
+        try {
+            List<PresentParticipantDto> participants = new ArrayList<>(pharmacyRepresentatives.values());
+            participants.addAll(laboratoryMembers.values());
+
+            return new PresenceCheckpointDto(version.get(), takenAt, participants, entryRecordWatermark,
+                    exitRecordWatermark);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Continues numbering from a version restored from a checkpoint, so sequences keep increasing across restarts.
+     * Only takes effect before the first change.
+     */
+    public void resumeFrom(long restoredVersion) {
+        synchronized (changeLogMonitor) {
+            if (version.get() == 0 && pendingChanges.isEmpty()) {
+                version.set(restoredVersion);
+                drainedVersion = restoredVersion;
+            }
+        }
+    }
+
+    /**
+     * Takes every change made since the previous call, in version order.
+     *
+     * @return the drained changes, or null if nothing changed
+     */
+    public PresenceChangeBatch drainChanges() {
+        synchronized (changeLogMonitor) {
+            if (pendingChanges.isEmpty()) {
+                return null;
+            }
+
+            PresenceChangeBatch batch = new PresenceChangeBatch(drainedVersion, version.get(),
+                    List.copyOf(pendingChanges));
+
+            pendingChanges.clear();
+            drainedVersion = batch.sequence();
+
+            return batch;
+        }
+    }
+
+    /**
+     * Builds a scoped snapshot under the read lock, so gates keep scanning while it is built. The version is read
+     * first: every change up to it is in the snapshot, and a change made meanwhile may be too, which is harmless
+     * because applying a delta the snapshot already reflects changes nothing.
+     */
+    private <K> EntitiesListResponseDto scopedSnapshot(ConcurrentHashMap<K, EntitiesListResponseDto> cache, K scope,
+                                                       Predicate<PresentParticipantDto> filter) {
+        EntitiesListResponseDto cached = cache.get(scope);
+
+        if (cached != null && cached.getVersion() == version.get()) {
+            return cached;
+        }
+
+        lock.readLock().lock();
+        try {
+            EntitiesListResponseDto built = buildSnapshot(filter, version.get());
+
+            // Never replaces a snapshot a concurrent request built for a later version
+            return cache.merge(scope, built,
+                    (current, candidate) -> current.getVersion() >= candidate.getVersion() ? current : candidate);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private EntitiesListResponseDto buildSnapshot(Predicate<PresentParticipantDto> filter, long snapshotVersion) {
+        return new EntitiesListResponseDto(
+                pharmacyRepresentatives.values().stream()
+                        .filter(filter)
+                        .map(PresentParticipantDto::pharmacyRepresentative)
+                        .toList(),
+                laboratoryMembers.values().stream()
+                        .filter(filter)
+                        .map(PresentParticipantDto::laboratoryMember)
+                        .toList(),
+                snapshotVersion);
+    }
+
+    /**
+     * Adds a participant, or adds the segment to a participant already present.
+     */
+    private static PresenceChange enter(ConcurrentHashMap<Long, PresentParticipantDto> participants,
+                                        PresentParticipantDto arriving, EventSegment segment) {
+        PresenceChange[] change = new PresenceChange[1];
+
+        participants.compute(arriving.participantId(), (participantId, present) -> {
+            if (present == null) {
+                change[0] = new PresenceChange(participantId, arriving.segments(), arriving.laboratoryId(),
+                        arriving.pharmacyRepresentative(), arriving.laboratoryMember(), true);
+                return arriving;
+            }
+
+            if (segment == null || present.segments().contains(segment)) {
+                return present;
+            }
+
+            change[0] = new PresenceChange(participantId, Set.of(segment), present.laboratoryId(),
+                    present.pharmacyRepresentative(), present.laboratoryMember(), false);
+            return present.withSegment(segment);
+        });
+
+        return change[0];
+    }
+
+    private static PresenceChange extend(ConcurrentHashMap<Long, PresentParticipantDto> participants,
+                                         Long participantId, EventSegment segment) {
+        PresenceChange[] change = new PresenceChange[1];
+
+        participants.computeIfPresent(participantId, (id, present) -> {
+            if (present.segments().contains(segment)) {
+                return present;
+            }
+
+            change[0] = new PresenceChange(id, Set.of(segment), present.laboratoryId(),
+                    present.pharmacyRepresentative(), present.laboratoryMember(), false);
+            return present.withSegment(segment);
+        });
+
+        return change[0];
+    }
+
+    private static PresenceChange removed(PresentParticipantDto present) {
+        return present != null ? new PresenceChange(present.participantId(), present.segments(),
+                present.laboratoryId(), null, null, false) : null;
+    }
+
+    private static Set<EventSegment> segments(EventSegment segment) {
+        return segment != null ? Set.of(segment) : Set.of();
+    }
+
+    /**
+     * Applies a mutation made on this instance that returns the resulting change, or null if it changed nothing.
+     */
+    private PresenceChange change(Long participantId, Supplier<PresenceChange> mutation) {
+        return change(participantId, mutation, true);
+    }
+
+    private PresenceChange change(Long participantId, Supplier<PresenceChange> mutation, boolean local) {
+        lock.readLock().lock();
+        try {
+            // Held until the change is logged: otherwise a concurrent add and remove of the same participant could
+            // apply in one order and be logged, and so broadcast and published to the cluster, in the other
+            synchronized (changeStripes[Math.floorMod(Long.hashCode(participantId), CHANGE_STRIPES)]) {
+                PresenceChange presenceChange = mutation.get();
+
+                if (presenceChange == null) {
+                    return null;
+                }
+
+                synchronized (changeLogMonitor) {
+                    version.incrementAndGet();
+                    pendingChanges.add(presenceChange);
+
+                    Consumer<PresenceChange> listener = localChangeListener;
+
+                    if (local && listener != null) {
+                        listener.accept(presenceChange);
+                    }
+                }
+
+                return presenceChange;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A logged change; an addition carries the added participant, a removal carries neither.
+     *
+     * @param segments     the segments the participant entered, or for a removal every segment they left
+     * @param laboratoryId only set for laboratory members
+     * @param arrival      whether the participant was absent before; false when an already present participant
+     *                     enters one more segment, and for removals
+     */
+    public record PresenceChange(Long participantId, Set<EventSegment> segments, Long laboratoryId,
+                                 PharmacyRepresentativeResponseDto pharmacyRepresentative,
+                                 LaboratoryMemberResponseDto laboratoryMember, boolean arrival) {
+
+        public boolean isAddition() {
+            return pharmacyRepresentative != null || laboratoryMember != null;
+        }
+
+        /**
+         * Whether the participant arrived or left, as opposed to entering one more segment.
+         */
+        public boolean isAttendanceChange() {
+            return arrival || !isAddition();
+        }
+    }
+
+    /**
+     * The changes taking the registry from version {@code fromSequence} to {@code sequence}.
+     */
+    public record PresenceChangeBatch(long fromSequence, long sequence, List<PresenceChange> changes) {
+
+        /**
+         * Merges the changes matching the filter into a single delta.
+         *
+         * @param deltaFromSequence the sequence the delta continues from on its topic
+         * @param filter            selects the changes the topic shows
+         * @return the delta, or null if no change matches
+         */
+        public PresenceDeltaDto toDelta(long deltaFromSequence, Predicate<PresenceChange> filter) {
+            Map<Long, PharmacyRepresentativeResponseDto> addedPharmacyRepresentatives = new LinkedHashMap<>();
+            Map<Long, LaboratoryMemberResponseDto> addedLaboratoryMembers = new LinkedHashMap<>();
+            Set<Long> removedParticipantIds = new LinkedHashSet<>();
+            boolean matched = false;
+
+            for (PresenceChange change : changes) {
+                if (!filter.test(change)) {
+                    continue;
+                }
+
+                matched = true;
+
+                if (change.pharmacyRepresentative() != null) {
+                    addedPharmacyRepresentatives.put(change.participantId(), change.pharmacyRepresentative());
+                } else if (change.laboratoryMember() != null) {
+                    addedLaboratoryMembers.put(change.participantId(), change.laboratoryMember());
+                } else {
+                    // Still reported when added in this same batch, for clients whose snapshot already has it
+                    addedPharmacyRepresentatives.remove(change.participantId());
+                    addedLaboratoryMembers.remove(change.participantId());
+                    removedParticipantIds.add(change.participantId());
+                }
+            }
+
+            if (!matched) {
+                return null;
+            }
+
+            return new PresenceDeltaDto(deltaFromSequence, sequence, List.copyOf(addedPharmacyRepresentatives.values()),
+                    List.copyOf(addedLaboratoryMembers.values()), List.copyOf(removedParticipantIds));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.SerializedPayloadDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.PayloadEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serializes each presence snapshot once per scope, registry version and encoding, so every initial-data request
+ * and resync between two changes reuses the same bytes.
+ */
+@Component
+public class PresenceSnapshotCache {
+
+    private static final SnapshotScope EVERYONE = new SnapshotScope(null, null);
+
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceSnapshotEncoder presenceSnapshotEncoder;
+
+    private final Map<SnapshotScope, AtomicReference<CachedSnapshot>> cachedSnapshots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PresenceSnapshotCache(PresenceRegistry presenceRegistry, PresenceSnapshotEncoder presenceSnapshotEncoder) {
+        this.presenceRegistry = presenceRegistry;
+        this.presenceSnapshotEncoder = presenceSnapshotEncoder;
+    }
+
+    /**
+     * Returns the current snapshot as JSON, serializing it only if the registry changed since the last call.
+     */
+    public SerializedPayloadDto getSerializedSnapshot() {
+        return getSerializedSnapshot(PayloadEncoding.JSON);
+    }
+
+    /**
+     * Returns the current snapshot in the given encoding, serializing it only if the registry changed since it was
+     * last requested in that encoding.
+     */
+    public SerializedPayloadDto getSerializedSnapshot(PayloadEncoding encoding) {
+        return serialize(EVERYONE, presenceRegistry.snapshot(), encoding);
+    }
+
+    /**
+     * Returns the snapshot of the participants who entered through a segment in the given encoding, serializing it
+     * only if the registry changed since it was last requested in that encoding.
+     */
+    public SerializedPayloadDto getSerializedSegmentSnapshot(EventSegment segment, PayloadEncoding encoding) {
+        return serialize(new SnapshotScope(segment, null), presenceRegistry.snapshotForSegment(segment), encoding);
+    }
+
+    /**
+     * Returns the snapshot of the present members of a laboratory in the given encoding, serializing it only if the
+     * registry changed since it was last requested in that encoding.
+     */
+    public SerializedPayloadDto getSerializedLaboratorySnapshot(Long laboratoryId, PayloadEncoding encoding) {
+        return serialize(new SnapshotScope(null, laboratoryId), presenceRegistry.snapshotForLaboratory(laboratoryId),
+                encoding);
+    }
+
+    private SerializedPayloadDto serialize(SnapshotScope scope, EntitiesListResponseDto snapshot,
+                                           PayloadEncoding encoding) {
+        long version = snapshot.getVersion();
+
+        // Only ever moves forward: a request still holding an older snapshot must not evict a newer one's bytes
+        CachedSnapshot current = cachedSnapshots.computeIfAbsent(scope, key -> new AtomicReference<>())
+                .updateAndGet(cached -> cached == null || cached.version() < version
+                        ? new CachedSnapshot(version, new ConcurrentHashMap<>()) : cached);
+
+        if (current.version() != version) {
+            return presenceSnapshotEncoder.encode(snapshot, encoding);
+        }
+
+        return current.payloads().computeIfAbsent(encoding, key -> presenceSnapshotEncoder.encode(snapshot, key));
+    }
+
+    private record SnapshotScope(EventSegment segment, Long laboratoryId) {
+    }
+
+    private record CachedSnapshot(long version, Map<PayloadEncoding, SerializedPayloadDto> payloads) {
+    }
+}
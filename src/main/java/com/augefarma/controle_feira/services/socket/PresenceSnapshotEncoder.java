@@ -0,0 +1,41 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.ColumnarSnapshotDto;
+import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.SerializedPayloadDto;
+import com.augefarma.controle_feira.enums.PayloadEncoding;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes presence snapshots in the encoding a realtime client subscribed with. The columnar and CBOR encodings
+ * both use the columnar layout; CBOR additionally replaces the JSON text with binary.
+ */
+@Component
+public class PresenceSnapshotEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    @Autowired
+    public PresenceSnapshotEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public SerializedPayloadDto encode(EntitiesListResponseDto snapshot, PayloadEncoding encoding) {
+        try {
+            byte[] bytes = switch (encoding) {
+                case JSON -> objectMapper.writeValueAsBytes(snapshot);
+                case COLUMNAR -> objectMapper.writeValueAsBytes(ColumnarSnapshotDto.from(snapshot));
+                case CBOR -> cborMapper.writeValueAsBytes(ColumnarSnapshotDto.from(snapshot));
+            };
+
+            return new SerializedPayloadDto(bytes, encoding.getContentType());
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("Falha ao serializar o estado de presença", exception);
+        }
+    }
+}
@@ -1,79 +1,179 @@
 package com.augefarma.controle_feira.services.socket;
 
+import com.augefarma.controle_feira.dtos.event.PresenceResyncEventDto;
 import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
 import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
-import com.augefarma.controle_feira.dtos.event.ListUpdateEventDto;
 import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
-import com.augefarma.controle_feira.entities.entry_exit.EntryRecordEntity;
+import com.augefarma.controle_feira.dtos.real_time.HeadcountDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceCheckpointDto;
+import com.augefarma.controle_feira.dtos.real_time.PresentParticipantDto;
 import com.augefarma.controle_feira.entities.laboratory.LaboratoryMemberEntity;
-import com.augefarma.controle_feira.entities.participant.ParticipantEntity;
 import com.augefarma.controle_feira.entities.pharmacy_representative.PharmacyRepresentativeEntity;
 import com.augefarma.controle_feira.enums.EventSegment;
 import com.augefarma.controle_feira.exceptions.EntityAlreadyPresentException;
 import com.augefarma.controle_feira.exceptions.EntityNotPresentException;
-import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
-import lombok.Getter;
+import com.augefarma.controle_feira.repositories.participant.ParticipantPresenceProjection;
+import com.augefarma.controle_feira.repositories.participant.ParticipantPresenceStateProjection;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.services.socket.PresenceRegistry.PresenceChange;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.List;
+import java.time.LocalTime;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 public class RealTimeUpdateService {
 
-    @Getter
-    private final EntitiesListResponseDto entitiesListResponseDto;
-    private final EntryRecordRepository entryRecordRepository;
-    private final ApplicationEventPublisher applicationEventPublisher;
+    private final PresenceRegistry presenceRegistry;
+    private final ParticipantRepository participantRepository;
+    private final PresenceBroadcastScheduler presenceBroadcastScheduler;
+    private final PresenceHeadcount presenceHeadcount;
+    private final PresenceCheckpointService presenceCheckpointService;
+    private final PresenceClusterService presenceClusterService;
 
     @Autowired
-    public RealTimeUpdateService(EntryRecordRepository entryRecordRepository,
-                                 ApplicationEventPublisher applicationEventPublisher) {
-        this.entryRecordRepository = entryRecordRepository;
-        this.entitiesListResponseDto = new EntitiesListResponseDto();
-        this.applicationEventPublisher = applicationEventPublisher;
+    public RealTimeUpdateService(PresenceRegistry presenceRegistry, ParticipantRepository participantRepository,
+                                 PresenceBroadcastScheduler presenceBroadcastScheduler,
+                                 PresenceHeadcount presenceHeadcount,
+                                 PresenceCheckpointService presenceCheckpointService,
+                                 PresenceClusterService presenceClusterService) {
+        this.presenceRegistry = presenceRegistry;
+        this.participantRepository = participantRepository;
+        this.presenceBroadcastScheduler = presenceBroadcastScheduler;
+        this.presenceHeadcount = presenceHeadcount;
+        this.presenceCheckpointService = presenceCheckpointService;
+        this.presenceClusterService = presenceClusterService;
     }
 
+    /**
+     * Returns an immutable, versioned snapshot of the participants currently present.
+     */
+    public EntitiesListResponseDto getEntitiesListResponseDto() {
+        return presenceRegistry.snapshot();
+    }
+
+    /**
+     * Restores who is present when the application starts, so a restart mid-event keeps the dashboards accurate.
+     * A checkpoint taken today is loaded and only the scans made after it are replayed; otherwise presence is
+     * rebuilt from today's daily presences and exit records, the same rule gate scans apply. Checkpointing and
+     * cluster synchronization start once the state is restored; the cluster channel is listened to beforehand so no
+     * change from another instance is missed.
+     */
     @EventListener(ApplicationReadyEvent.class)
-    @Transactional
+    @Transactional(readOnly = true)
     public void initializeState() {
-        List<EntryRecordEntity> entryRecords = getEntryRecordsForTodayWithoutCheckOut();
-        Set<ParticipantEntity> processedParticipants = new HashSet<>();
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
 
-        for (EntryRecordEntity entry : entryRecords) {
-            ParticipantEntity participant = entry.getParticipant();
+        presenceClusterService.subscribe();
 
-            if (isParticipantNotProcessed(participant, processedParticipants)) {
-                addParticipantToRealtimeUpdateService(participant);
-                processedParticipants.add(participant);
-            }
+        Optional<PresenceCheckpointDto> checkpoint = presenceCheckpointService.load()
+                .filter(candidate -> candidate.takenAt().toLocalDate().isEqual(today));
+
+        if (checkpoint.isPresent()) {
+            int replayed = restoreFromCheckpoint(checkpoint.get(), today);
+
+            log.info("Estado de presença restaurado do checkpoint com {} participantes e {} registros reprocessados "
+                    + "em {} ms", checkpoint.get().participants().size(), replayed,
+                    (System.nanoTime() - start) / 1_000_000);
+        } else {
+            int restored = rebuildFromRecords(today);
+
+            log.info("Estado de presença restaurado com {} participantes em {} ms", restored,
+                    (System.nanoTime() - start) / 1_000_000);
         }
+
+        presenceCheckpointService.start();
+        presenceClusterService.start();
     }
 
+    private int rebuildFromRecords(LocalDate today) {
+        AtomicInteger restored = new AtomicInteger();
+
+        try (Stream<ParticipantPresenceProjection> presentParticipants = participantRepository
+                .streamPresentSnapshots(today, today.atStartOfDay(), today.atTime(LocalTime.MAX))) {
 
-    private List<EntryRecordEntity> getEntryRecordsForTodayWithoutCheckOut() {
-        return entryRecordRepository.findAll()
-                .stream()
-                .filter(entry -> entry.getEventSegment() == EventSegment.FAIR
-                        && entry.getParticipant().getExitRecords().isEmpty()
-                        && entry.getCheckinTime().toLocalDate().isEqual(LocalDate.now()))
-                .toList();
+            presentParticipants.forEach(present -> {
+                restorePresent(present);
+                restored.incrementAndGet();
+            });
+        }
+
+        return restored.get();
     }
 
+    /**
+     * Loads the checkpoint, then recomputes from the database the presence of every participant with an entry or
+     * exit record above the checkpoint's watermarks. Recomputing is idempotent, so records the checkpoint already
+     * reflects are harmless; a checkpoint without watermarks recomputes everyone with a record today.
+     */
+    private int restoreFromCheckpoint(PresenceCheckpointDto checkpoint, LocalDate today) {
+        presenceRegistry.resumeFrom(checkpoint.version());
+
+        for (PresentParticipantDto present : checkpoint.participants()) {
+            PresenceChange change = presenceRegistry.restore(present);
+
+            if (change != null) {
+                publishUpdateEvent(change);
+            }
+        }
 
-    private boolean isParticipantNotProcessed(ParticipantEntity participant, Set<ParticipantEntity> processedParticipants) {
-        return !processedParticipants.contains(participant);
+        AtomicInteger replayed = new AtomicInteger();
+
+        try (Stream<ParticipantPresenceStateProjection> participants = participantRepository
+                .streamPresenceWithRecordsAfter(today, today.atStartOfDay(), today.atTime(LocalTime.MAX),
+                        Objects.requireNonNullElse(checkpoint.entryRecordWatermark(), 0L),
+                        Objects.requireNonNullElse(checkpoint.exitRecordWatermark(), 0L))) {
+
+            participants.forEach(participant -> {
+                if (Boolean.TRUE.equals(participant.getPresent())) {
+                    restorePresent(participant);
+                } else if (presenceRegistry.isPresent(participant.getId())) {
+                    new ParticipantSnapshotDto(participant).removeToRealtimeUpdateService(this);
+                }
+
+                replayed.incrementAndGet();
+            });
+        }
+
+        return replayed.get();
     }
 
+    /**
+     * Marks a participant present through every segment they entered, adding the segments missing to one already
+     * present.
+     */
+    private void restorePresent(ParticipantPresenceProjection present) {
+        ParticipantSnapshotDto participant = new ParticipantSnapshotDto(present);
 
-    private void addParticipantToRealtimeUpdateService(ParticipantEntity participant) {
-        participant.addToRealtimeUpdateService(this);
+        // Entry records may still be waiting in the journal; the participant is present all the same
+        if (present.getSegments() == null) {
+            addPresent(participant, null);
+            return;
+        }
+
+        for (String segment : present.getSegments().split(",")) {
+            addPresent(participant, EventSegment.valueOf(segment));
+        }
+    }
+
+    private void addPresent(ParticipantSnapshotDto participant, EventSegment segment) {
+        try {
+            participant.addToRealtimeUpdateService(this, segment);
+        } catch (EntityAlreadyPresentException exception) {
+            // Already present through that segment
+        }
     }
 
     /**
@@ -81,20 +181,30 @@ public class RealTimeUpdateService {
      * If the representative is not already present, it is added, and an update event is published.
      *
      * @param pharmacyRepresentative the pharmacy representative to be added
+     * @param segment                the event segment the representative entered through
      */
-    public void addPharmacyRepresentativePresent(PharmacyRepresentativeEntity pharmacyRepresentative) {
+    public void addPharmacyRepresentativePresent(PharmacyRepresentativeEntity pharmacyRepresentative,
+                                                 EventSegment segment) {
         // Convert PharmacyRepresentativeEntity to PharmacyRepresentativeResponseDto
-        PharmacyRepresentativeResponseDto pharmacyRepresentativeResponseDto =
-                new PharmacyRepresentativeResponseDto(pharmacyRepresentative);
+        addPharmacyRepresentativePresent(new PharmacyRepresentativeResponseDto(pharmacyRepresentative), segment);
+    }
+
+    /**
+     * Adds a pharmacy representative to the list of currently present representatives and publishes an update event.
+     *
+     * @param pharmacyRepresentativeResponseDto the pharmacy representative to be added
+     * @param segment                           the event segment the representative entered through
+     */
+    public void addPharmacyRepresentativePresent(PharmacyRepresentativeResponseDto pharmacyRepresentativeResponseDto,
+                                                 EventSegment segment) {
+        // Add the representative, or the segment to a representative already present elsewhere
+        PresenceChange change = presenceRegistry.addPharmacyRepresentative(pharmacyRepresentativeResponseDto, segment);
 
-        // Check if the representative is already in the list
-        if (entitiesListResponseDto.getPharmacyRepresentatives().contains(pharmacyRepresentativeResponseDto)) {
+        if (change == null) {
             throw new EntityAlreadyPresentException("A entidade já está presente e não pode ser adicionada novamente");
         }
 
-        // Add the representative to the list of present representatives
-        entitiesListResponseDto.addPharmacyRepresentative(pharmacyRepresentativeResponseDto);
-        publishUpdateEvent(); // Publish an update event with the current state
+        publishUpdateEvent(change); // Publish an update event with the current state
     }
 
     /**
@@ -105,17 +215,26 @@ public class RealTimeUpdateService {
      */
     public void removePharmacyRepresentativePresent(PharmacyRepresentativeEntity pharmacyRepresentative) {
         // Convert PharmacyRepresentativeEntity to PharmacyRepresentativeResponseDto
-        PharmacyRepresentativeResponseDto pharmacyRepresentativeResponseDto =
-                new PharmacyRepresentativeResponseDto(pharmacyRepresentative);
+        removePharmacyRepresentativePresent(new PharmacyRepresentativeResponseDto(pharmacyRepresentative));
+    }
+
+    /**
+     * Removes a pharmacy representative from the list of currently present representatives and publishes an update
+     * event.
+     *
+     * @param pharmacyRepresentativeResponseDto the pharmacy representative to be removed
+     */
+    public void removePharmacyRepresentativePresent(
+            PharmacyRepresentativeResponseDto pharmacyRepresentativeResponseDto) {
+        // Remove the representative, failing if it is not present
+        PresenceChange change = presenceRegistry
+                .removePharmacyRepresentative(pharmacyRepresentativeResponseDto.getId());
 
-        // Check if the representative is in the list
-        if (!entitiesListResponseDto.getPharmacyRepresentatives().contains(pharmacyRepresentativeResponseDto)) {
+        if (change == null) {
             throw new EntityNotPresentException("A entidade não está presente e não pode ser removida");
         }
 
-        // Remove the representative from the list of present representatives
-        entitiesListResponseDto.removePharmacyRepresentative(pharmacyRepresentativeResponseDto);
-        publishUpdateEvent(); // Publish an update event with the current state
+        publishUpdateEvent(change); // Publish an update event with the current state
     }
 
     /**
@@ -123,21 +242,33 @@ public class RealTimeUpdateService {
      * If the laboratory member is not already present, it is added, and an update event is published.
      *
      * @param laboratoryMemberEntity the laboratory member to be added
+     * @param segment                the event segment the member entered through
      */
-    public void addLaboratoryMemberPresent(LaboratoryMemberEntity laboratoryMemberEntity) {
+    public void addLaboratoryMemberPresent(LaboratoryMemberEntity laboratoryMemberEntity, EventSegment segment) {
         // Convert LaboratoryMemberEntity to LaboratoryMemberResponseDto
-        LaboratoryMemberResponseDto laboratoryMemberResponseDto =
-                new LaboratoryMemberResponseDto(laboratoryMemberEntity);
+        addLaboratoryMemberPresent(new LaboratoryMemberResponseDto(laboratoryMemberEntity),
+                laboratoryMemberEntity.getLaboratory().getId(), segment);
+    }
+
+    /**
+     * Adds a laboratory member to the list of currently present laboratory members and publishes an update event.
+     *
+     * @param laboratoryMemberResponseDto the laboratory member to be added
+     * @param laboratoryId                the ID of the member's laboratory
+     * @param segment                     the event segment the member entered through
+     */
+    public void addLaboratoryMemberPresent(LaboratoryMemberResponseDto laboratoryMemberResponseDto, Long laboratoryId,
+                                           EventSegment segment) {
+        // Add the laboratory member, or the segment to a member already present elsewhere
+        PresenceChange change = presenceRegistry.addLaboratoryMember(laboratoryMemberResponseDto, laboratoryId,
+                segment);
 
-        // Check if the laboratory member is already in the list
-        if (entitiesListResponseDto.getLaboratoryMembers().contains(laboratoryMemberResponseDto)) {
+        if (change == null) {
             throw new EntityAlreadyPresentException(
                     "A entidade já está presente e não pode ser adicionada novamente");
         }
 
-        // Add the laboratory member to the list of present members
-        entitiesListResponseDto.addLaboratoryMember(laboratoryMemberResponseDto);
-        publishUpdateEvent(); // Publish an update event with the current state
+        publishUpdateEvent(change); // Publish an update event with the current state
     }
 
     /**
@@ -148,25 +279,83 @@ public class RealTimeUpdateService {
      */
     public void removeLaboratoryMemberPresent(LaboratoryMemberEntity laboratoryMember) {
         // Convert LaboratoryMemberEntity to LaboratoryMemberResponseDto
-        LaboratoryMemberResponseDto laboratoryMemberResponseDto = new LaboratoryMemberResponseDto(laboratoryMember);
+        removeLaboratoryMemberPresent(new LaboratoryMemberResponseDto(laboratoryMember));
+    }
+
+    /**
+     * Removes a laboratory member from the list of currently present laboratory members and publishes an update event.
+     *
+     * @param laboratoryMemberResponseDto the laboratory member to be removed
+     */
+    public void removeLaboratoryMemberPresent(LaboratoryMemberResponseDto laboratoryMemberResponseDto) {
+        // Remove the laboratory member, failing if it is not present
+        PresenceChange change = presenceRegistry.removeLaboratoryMember(laboratoryMemberResponseDto.getId());
 
-        // Check if the laboratory member is in the list
-        if (!entitiesListResponseDto.getLaboratoryMembers().contains(laboratoryMemberResponseDto)) {
+        if (change == null) {
             throw new EntityNotPresentException("A entidade não está presente e não pode ser removida");
         }
 
-        // Remove the laboratory member from the list of present members
-        entitiesListResponseDto.removeLaboratoryMember(laboratoryMemberResponseDto);
-        publishUpdateEvent(); // Publish an update event with the current state
+        publishUpdateEvent(change); // Publish an update event with the current state
     }
 
     /**
-     * Publishes a ListUpdateEvent with the current list of entities.
-     * This event is used to notify subscribers about updates to the list of entities.
+     * Adds a segment to a participant already present, such as one entering the party after the fair. A participant
+     * who already left is not brought back, since only the first entry of the day marks someone present.
+     *
+     * @param participantId the ID of the participant
+     * @param segment       the event segment entered
      */
-    private void publishUpdateEvent() {
-        // Create a new ListUpdateEventDto with the current state of entities
-        ListUpdateEventDto event = new ListUpdateEventDto(this, entitiesListResponseDto);
-        applicationEventPublisher.publishEvent(event); // Publish the event to the application event publisher
+    public void addSegmentToPresent(Long participantId, EventSegment segment) {
+        PresenceChange change = presenceRegistry.enterSegment(participantId, segment);
+
+        if (change != null) {
+            publishUpdateEvent(change);
+        }
+    }
+
+    /**
+     * Recomputes who is present from today's daily presences and exit records, when cluster synchronization may have
+     * missed changes made by another instance.
+     */
+    @EventListener(PresenceResyncEventDto.class)
+    @Transactional(readOnly = true)
+    public void resync() {
+        LocalDate today = LocalDate.now();
+        Set<Long> absent = presenceRegistry.getPresentParticipantIds();
+
+        try (Stream<ParticipantPresenceProjection> presentParticipants = participantRepository
+                .streamPresentSnapshots(today, today.atStartOfDay(), today.atTime(LocalTime.MAX))) {
+
+            presentParticipants.forEach(present -> {
+                absent.remove(present.getId());
+                restorePresent(present);
+            });
+        }
+
+        for (Long participantId : absent) {
+            PresenceChange change = presenceRegistry.removePharmacyRepresentative(participantId);
+
+            if (change == null) {
+                change = presenceRegistry.removeLaboratoryMember(participantId);
+            }
+
+            if (change != null) {
+                publishUpdateEvent(change);
+            }
+        }
+    }
+
+    /**
+     * Updates the headcount with the change and schedules a broadcast of the changes made since the previous one;
+     * when clustered, the registry hands local changes to the other instances itself. Changes arriving within the
+     * same tick are merged into a single update.
+     */
+    private void publishUpdateEvent(PresenceChange change) {
+        presenceHeadcount.apply(change);
+        presenceBroadcastScheduler.markDirty();
+    }
+
+    public HeadcountDto getHeadcount() {
+        return presenceHeadcount.getHeadcount();
     }
 }
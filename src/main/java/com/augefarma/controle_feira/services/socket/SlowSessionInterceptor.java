@@ -0,0 +1,181 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.OutboundMetricsDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the client outbound channel for sessions that fall behind. Messages on full-state destinations, such as
+ * the headcount, follow a latest-state-wins policy: when a newer one is queued for the same session, the older one
+ * is dropped instead of being sent. Presence topics carry deltas, which are never dropped since clients chain them
+ * by sequence.
+ */
+@Slf4j
+@Component
+public class SlowSessionInterceptor implements ExecutorChannelInterceptor {
+
+    private static final long SLOW_SESSION_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Set<String> latestStateDestinations;
+    private final long lateThresholdNanos;
+
+    // Enqueue time of each message waiting in the outbound executor, by message ID
+    private final ConcurrentHashMap<UUID, Long> enqueuedAt = new ConcurrentHashMap<>();
+
+    // ID of the newest queued message per session and full-state destination
+    private final ConcurrentHashMap<String, UUID> latestStateMessages = new ConcurrentHashMap<>();
+
+    // Last time each session was seen falling behind
+    private final ConcurrentHashMap<String, Long> slowSessions = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Long> handlingStartedAt = new ThreadLocal<>();
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong lateMessages = new AtomicLong();
+
+    @Autowired
+    public SlowSessionInterceptor(
+            @Value("${realtime.outbound.latest-state-destinations:/topic/headcount}")
+            Set<String> latestStateDestinations,
+            @Value("${realtime.outbound.late-threshold-ms:1000}") long lateThresholdMs) {
+        this.latestStateDestinations = Set.copyOf(latestStateDestinations);
+        this.lateThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lateThresholdMs);
+    }
+
+    /**
+     * Runs on the publishing thread, before the message is queued for its session.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        UUID messageId = message.getHeaders().getId();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        if (messageId == null || sessionId == null) {
+            return message;
+        }
+
+        enqueuedAt.put(messageId, System.nanoTime());
+
+        String latestStateKey = latestStateKey(message, sessionId);
+
+        if (latestStateKey != null) {
+            latestStateMessages.put(latestStateKey, messageId);
+        }
+
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception exception) {
+        // A message the executor rejected is never handled, so it must not stay tracked
+        if (!sent || exception != null) {
+            forget(message);
+        }
+    }
+
+    /**
+     * Runs on the outbound executor, right before the message is written to its session.
+     *
+     * @return null to drop a full-state message superseded while it waited
+     */
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        UUID messageId = message.getHeaders().getId();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        if (messageId == null || sessionId == null) {
+            return message;
+        }
+
+        Long enqueued = enqueuedAt.remove(messageId);
+        long now = System.nanoTime();
+
+        String latestStateKey = latestStateKey(message, sessionId);
+
+        if (latestStateKey != null && !latestStateMessages.remove(latestStateKey, messageId)) {
+            droppedMessages.incrementAndGet();
+            markSlow(sessionId, now);
+            return null;
+        }
+
+        if (enqueued != null && now - enqueued > lateThresholdNanos) {
+            lateMessages.incrementAndGet();
+            markSlow(sessionId, now);
+        }
+
+        handlingStartedAt.set(now);
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                    Exception exception) {
+        Long startedAt = handlingStartedAt.get();
+        handlingStartedAt.remove();
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        // A write that blocks this long means the session's socket is not keeping up
+        if (startedAt != null && sessionId != null && System.nanoTime() - startedAt > lateThresholdNanos) {
+            markSlow(sessionId, System.nanoTime());
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        slowSessions.remove(event.getSessionId());
+        latestStateMessages.keySet().removeIf(key -> key.startsWith(event.getSessionId() + "|"));
+    }
+
+    public OutboundMetricsDto getMetrics() {
+        long now = System.nanoTime();
+        slowSessions.values().removeIf(lastSlow -> now - lastSlow > SLOW_SESSION_WINDOW_NANOS);
+
+        return new OutboundMetricsDto(droppedMessages.get(), lateMessages.get(), slowSessions.size(),
+                TimeUnit.NANOSECONDS.toMillis(lateThresholdNanos));
+    }
+
+    private String latestStateKey(Message<?> message, String sessionId) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+
+        return destination != null && latestStateDestinations.contains(destination)
+                ? sessionId + "|" + destination : null;
+    }
+
+    private void markSlow(String sessionId, long now) {
+        if (slowSessions.put(sessionId, now) == null) {
+            log.warn("Sessão WebSocket {} não está acompanhando as atualizações", sessionId);
+        }
+    }
+
+    private void forget(Message<?> message) {
+        UUID messageId = message.getHeaders().getId();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        if (messageId == null || sessionId == null) {
+            return;
+        }
+
+        enqueuedAt.remove(messageId);
+
+        String latestStateKey = latestStateKey(message, sessionId);
+
+        if (latestStateKey != null) {
+            latestStateMessages.remove(latestStateKey, messageId);
+        }
+    }
+}
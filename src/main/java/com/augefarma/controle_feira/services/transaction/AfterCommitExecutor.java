@@ -0,0 +1,32 @@
+package com.augefarma.controle_feira.services.transaction;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory side effects, such as presence registry changes and cache invalidations, until the current
+ * transaction commits, so they never reflect writes that are rolled back or not yet visible to other connections.
+ * Outside a transaction the action runs right away.
+ */
+@Component
+public class AfterCommitExecutor {
+
+    /**
+     * Runs the action once the current transaction commits, or immediately if there is none. The action is dropped
+     * if the transaction rolls back.
+     */
+    public void execute(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,5 @@
+CREATE INDEX idx_entry_records_participant_segment_checkin
+    ON entry_records (participant_id, event_segment, checkin_time);
+
+CREATE INDEX idx_exit_records_participant_segment_checkout
+    ON exit_records (participant_id, event_segment, checkout_time);
@@ -0,0 +1,14 @@
+CREATE TABLE daily_presences (
+    participant_id BIGINT NOT NULL,
+    presence_date DATE NOT NULL,
+    first_checkin_time TIMESTAMP NOT NULL,
+    entry_count INTEGER NOT NULL,
+
+    PRIMARY KEY (participant_id, presence_date),
+    FOREIGN KEY (participant_id) REFERENCES participants(id)
+);
+
+INSERT INTO daily_presences (participant_id, presence_date, first_checkin_time, entry_count)
+SELECT participant_id, CAST(checkin_time AS DATE), MIN(checkin_time), COUNT(*)
+FROM entry_records
+GROUP BY participant_id, CAST(checkin_time AS DATE);
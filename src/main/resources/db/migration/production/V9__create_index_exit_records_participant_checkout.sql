@@ -0,0 +1,2 @@
+CREATE INDEX idx_exit_records_participant_checkout
+    ON exit_records (participant_id, checkout_time);
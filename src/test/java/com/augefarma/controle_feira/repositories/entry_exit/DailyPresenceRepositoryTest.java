@@ -0,0 +1,105 @@
+package com.augefarma.controle_feira.repositories.entry_exit;
+
+import com.augefarma.controle_feira.dtos.authentication.validate_entry_exit.DailyPresenceDto;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs against a real PostgreSQL, since the upsert is what makes concurrent gates agree. Only enabled when a
+ * database is given, e.g. {@code mvn test -Dpostgres.url=jdbc:postgresql://localhost:5432/feira}; the production
+ * migrations are applied to a scratch schema that is dropped afterwards.
+ */
+@EnabledIfSystemProperty(named = "postgres.url", matches = ".+")
+class DailyPresenceRepositoryTest {
+
+    private static final String SCHEMA = "daily_presence_test";
+    private static final int GATES = 16;
+
+    private HikariDataSource dataSource;
+    private Flyway flyway;
+    private JdbcTemplate jdbcTemplate;
+    private DailyPresenceRepository dailyPresenceRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("postgres.url"));
+        dataSource.setUsername(System.getProperty("postgres.username", "postgres"));
+        dataSource.setPassword(System.getProperty("postgres.password", "postgres"));
+        dataSource.setSchema(SCHEMA);
+        dataSource.setMaximumPoolSize(GATES);
+
+        flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .locations("classpath:db/migration/production")
+                .cleanDisabled(false)
+                .load();
+        flyway.clean();
+        flyway.migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        dailyPresenceRepository = new DailyPresenceRepository(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        flyway.clean();
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentGatesAgreeOnTheFirstEntryOfTheDay() throws Exception {
+        Long participantId = jdbcTemplate.queryForObject(
+                "INSERT INTO participants (name, cpf) VALUES ('Representante', '12345678901') RETURNING id",
+                Long.class);
+        LocalDateTime opening = LocalDate.of(2026, 10, 18).atTime(9, 0);
+        CyclicBarrier start = new CyclicBarrier(GATES);
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+
+        try {
+            List<Future<DailyPresenceDto>> scans = new ArrayList<>();
+
+            // Every gate scans the same badge at once, each with its own clock
+            for (int gate = 0; gate < GATES; gate++) {
+                LocalDateTime checkinTime = opening.plusSeconds(gate);
+                scans.add(gates.submit(() -> {
+                    start.await();
+                    return dailyPresenceRepository.registerEntry(participantId, checkinTime);
+                }));
+            }
+
+            List<DailyPresenceDto> presences = new ArrayList<>();
+
+            for (Future<DailyPresenceDto> scan : scans) {
+                presences.add(scan.get());
+            }
+
+            assertEquals(1, presences.stream().filter(DailyPresenceDto::isFirstEntryOfDay).count());
+            assertEquals(IntStream.rangeClosed(1, GATES).boxed().collect(Collectors.toSet()),
+                    presences.stream().map(DailyPresenceDto::entryCount).collect(Collectors.toSet()));
+            // The earliest clock is kept as the first entry, whichever gate won the insert
+            assertEquals(new DailyPresenceDto(GATES + 1, opening),
+                    dailyPresenceRepository.registerEntry(participantId, opening.plusHours(1)));
+        } finally {
+            gates.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.augefarma.controle_feira.services.authentication.entry_exit;
+
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.repositories.entry_exit.EntryRecordRepository;
+import com.augefarma.controle_feira.repositories.entry_exit.ExitRecordRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.services.authentication.entry_exit.CheckInJournalService.PendingRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class CheckInJournalServiceTest {
+
+    private static final LocalDateTime OPENING = LocalDate.now().atTime(9, 0);
+
+    private final EntryRecordRepository entryRecordRepository = mock(EntryRecordRepository.class);
+    private final ExitRecordRepository exitRecordRepository = mock(ExitRecordRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    // Every batch the database accepted, in the order it was written
+    private final List<PendingRecord> written = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    private CheckInJournalService checkInJournalService;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        checkInJournalService.shutdown();
+    }
+
+    @Test
+    void aFullBatchIsFlushedWithoutWaitingForTheInterval() throws Exception {
+        checkInJournalService = journal(3, 60_000);
+
+        for (long participantId = 1; participantId <= 3; participantId++) {
+            checkInJournalService.recordEntry(participantId, EventSegment.FAIR, OPENING);
+        }
+
+        awaitUntil(() -> written.size() == 3);
+
+        assertEquals(List.of(1L, 2L, 3L), written.stream().map(PendingRecord::participantId).toList());
+        verifyNoInteractions(entryRecordRepository);
+    }
+
+    @Test
+    void failedInsertsAreRetriedWithoutLossOrDuplication() throws Exception {
+        checkInJournalService = journal(500, 10);
+        failuresLeft.set(4);
+
+        for (long participantId = 1; participantId <= 5; participantId++) {
+            checkInJournalService.recordExit(participantId, EventSegment.BUFFET, OPENING.plusMinutes(participantId));
+        }
+
+        // Still counted as pending while the database keeps failing
+        assertTrue(checkInJournalService.hasPendingExit(1L, OPENING.toLocalDate()));
+
+        awaitUntil(() -> written.size() == 5 && !checkInJournalService.hasPendingExit(5L, OPENING.toLocalDate()));
+
+        assertEquals(0, failuresLeft.get());
+        assertEquals(LongStream.rangeClosed(1, 5).boxed().toList(),
+                written.stream().map(PendingRecord::participantId).toList());
+        assertFalse(checkInJournalService.hasPendingExit(1L, OPENING.toLocalDate()));
+    }
+
+    @Test
+    void queuedRecordsAreDrainedOnShutdown() throws Exception {
+        checkInJournalService = journal(500, 60_000);
+
+        for (long participantId = 1; participantId <= 3; participantId++) {
+            checkInJournalService.recordExit(participantId, EventSegment.BUFFET, OPENING);
+        }
+
+        assertTrue(written.isEmpty());
+
+        checkInJournalService.shutdown();
+
+        assertEquals(List.of(1L, 2L, 3L), written.stream().map(PendingRecord::participantId).toList());
+        assertFalse(checkInJournalService.hasPendingExit(1L, OPENING.toLocalDate()));
+
+        // Once closed, records are saved synchronously instead of queued where nothing would flush them
+        checkInJournalService.recordExit(4L, EventSegment.BUFFET, OPENING);
+
+        verify(exitRecordRepository).save(any());
+        assertEquals(3, written.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CheckInJournalService journal(int batchSize, long flushIntervalMs) {
+        doAnswer(invocation -> {
+            if (failuresLeft.getAndUpdate(failures -> Math.max(0, failures - 1)) > 0) {
+                throw new TransientDataAccessResourceException("Banco de dados indisponível");
+            }
+
+            written.addAll(new ArrayList<>(invocation.<Collection<PendingRecord>>getArgument(1)));
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        return new CheckInJournalService(entryRecordRepository, exitRecordRepository,
+                mock(ParticipantRepository.class), jdbcTemplate, mock(PlatformTransactionManager.class), true,
+                10_000, batchSize, flushIntervalMs, 20);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condição não atingida em 5 s");
+            Thread.sleep(10);
+        }
+    }
+}
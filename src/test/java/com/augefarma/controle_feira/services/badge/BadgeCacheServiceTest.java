@@ -0,0 +1,156 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.CachedBadgeDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BadgeCacheServiceTest {
+
+    private final BadgeService badgeService = spy(new BadgeService(QRCodeRendering.VECTOR,
+            new BadgeTemplateService(""), true, new BadgeTokenService("", 0)));
+    private final AfterCommitExecutor afterCommitExecutor = new AfterCommitExecutor();
+
+    @Test
+    void unchangedBadgesAreServedFromMemory() throws Exception {
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 1 << 20,
+                1 << 20, "");
+
+        CachedBadgeDto first = badgeCacheService.getBadge(badge("Maria da Silva"));
+        byte[] firstPdf = write(first);
+        CachedBadgeDto second = badgeCacheService.getBadge(badge("Maria da Silva"));
+        CachedBadgeDto renamed = badgeCacheService.getBadge(badge("Maria da Silva Souza"));
+
+        assertArrayEquals(firstPdf, write(second));
+        assertNotEquals(first.hash(), renamed.hash());
+        verify(badgeService, times(1)).generateBadge(any(BadgeDto.class));
+    }
+
+    @Test
+    void badgesAreOnlyRenderedWhenWritten() throws Exception {
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 1 << 20,
+                1 << 20, "");
+
+        badgeCacheService.getBadge(badge("Maria da Silva"));
+
+        verify(badgeService, never()).generateBadge(any(BadgeDto.class));
+    }
+
+    @Test
+    void withoutCacheTiersBadgesAreStreamed() throws Exception {
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 0, 1 << 20, "");
+
+        write(badgeCacheService.getBadge(badge("Maria da Silva")));
+
+        verify(badgeService, never()).generateBadge(any(BadgeDto.class));
+        verify(badgeService).writeBadge(any(BadgeDto.class), any());
+    }
+
+    @Test
+    void evictedBadgesSpillToDisk(@TempDir Path diskPath) throws Exception {
+        // Too small for a single badge, so every badge goes straight to disk
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 1,
+                1 << 20, diskPath.toString());
+
+        CachedBadgeDto first = badgeCacheService.getBadge(badge("Maria da Silva"));
+        byte[] firstPdf = write(first);
+        Path file = diskPath.resolve(first.hash() + ".pdf");
+
+        assertTrue(Files.exists(file));
+        assertArrayEquals(firstPdf, write(badgeCacheService.getBadge(badge("Maria da Silva"))));
+        verify(badgeService, times(1)).generateBadge(any(BadgeDto.class));
+
+        badgeCacheService.invalidateLaboratory(7L);
+
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void theDiskTierKeepsTheMostRecentlyUsedBadgesWithinItsBudget(@TempDir Path diskPath) throws Exception {
+        long badgeBytes = badgeService.generateBadge(badge("Maria da Silva")).length;
+        // Room for two badges of about this size, so the third evicts the least recently used one
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 1,
+                badgeBytes * 5 / 2, diskPath.toString());
+
+        CachedBadgeDto first = badgeCacheService.getBadge(badge(1L, "Maria da Silva"));
+        write(first);
+        CachedBadgeDto second = badgeCacheService.getBadge(badge(2L, "Mara da Silva"));
+        write(second);
+        write(badgeCacheService.getBadge(badge(1L, "Maria da Silva")));
+        CachedBadgeDto third = badgeCacheService.getBadge(badge(3L, "Marta da Silva"));
+        write(third);
+
+        assertTrue(Files.exists(diskPath.resolve(first.hash() + ".pdf")));
+        assertFalse(Files.exists(diskPath.resolve(second.hash() + ".pdf")));
+        assertTrue(Files.exists(diskPath.resolve(third.hash() + ".pdf")));
+    }
+
+    @Test
+    void badgesLeftOnDiskAreClearedAtStartup(@TempDir Path diskPath) throws Exception {
+        BadgeCacheService previousRun = new BadgeCacheService(badgeService, afterCommitExecutor, 1, 1 << 20,
+                diskPath.toString());
+        CachedBadgeDto badge = previousRun.getBadge(badge("Maria da Silva"));
+        write(badge);
+        Path unrelated = Files.writeString(diskPath.resolve("leia-me.txt"), "Não é um crachá");
+
+        new BadgeCacheService(badgeService, afterCommitExecutor, 1, 1 << 20, diskPath.toString()).clearDisk();
+
+        assertFalse(Files.exists(diskPath.resolve(badge.hash() + ".pdf")));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    @Test
+    void invalidationsWaitForTheTransactionToCommit() throws Exception {
+        BadgeCacheService badgeCacheService = new BadgeCacheService(badgeService, afterCommitExecutor, 1 << 20,
+                1 << 20, "");
+        write(badgeCacheService.getBadge(badge("Maria da Silva")));
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            badgeCacheService.invalidateParticipant(1L);
+            write(badgeCacheService.getBadge(badge("Maria da Silva")));
+            verify(badgeService, times(1)).generateBadge(any(BadgeDto.class));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        write(badgeCacheService.getBadge(badge("Maria da Silva")));
+        verify(badgeService, times(2)).generateBadge(any(BadgeDto.class));
+    }
+
+    private static byte[] write(CachedBadgeDto badge) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        badge.body().writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static BadgeDto badge(String fullName) {
+        return badge(1L, fullName);
+    }
+
+    private static BadgeDto badge(Long participantId, String fullName) {
+        return new BadgeDto(participantId, ParticipantType.LABORATORY_MEMBER, 7L, fullName,
+                "Laboratório Central S.A.", "123.456.789-00");
+    }
+}
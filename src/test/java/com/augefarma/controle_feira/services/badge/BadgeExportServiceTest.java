@@ -0,0 +1,146 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
+import com.augefarma.controle_feira.repositories.laboratory.LaboratoryRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantSnapshotProjection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BadgeExportServiceTest {
+
+    private static final int WARM_UP_BADGES = 200;
+    private static final int BADGES = 1000;
+
+    private final ParticipantRepository participantRepository = mock(ParticipantRepository.class);
+    private final BadgeService badgeService = new BadgeService(QRCodeRendering.VECTOR,
+            new BadgeTemplateService(""), true, new BadgeTokenService("", 0));
+
+    @BeforeEach
+    void setUp() {
+        // Every fifth ID has no participant
+        when(participantRepository.findSnapshotsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id % 5 != 0).map(BadgeExportServiceTest::participant).toList();
+        });
+    }
+
+    @Test
+    void zipExportsHoldEveryBadgeInParticipantOrder() throws Exception {
+        // Small pages and a narrow window, so rendering crosses pages and threads finish out of order
+        BadgeExportService badgeExportService = new BadgeExportService(participantRepository,
+                mock(LaboratoryRepository.class), badgeService, 7, 4, 3);
+        List<Long> ids = new ArrayList<>(LongStream.rangeClosed(1, 60).boxed().toList());
+        ids.add(3L);
+        Collections.shuffle(ids, new Random(42));
+
+        try {
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            badgeExportService.exportBadges(ids, BadgeExportFormat.ZIP).writeTo(zip);
+
+            List<String> expected = LongStream.rangeClosed(1, 60).filter(id -> id % 5 != 0)
+                    .mapToObj(id -> "badge_" + id + ".pdf").toList();
+
+            assertEquals(expected, entryNames(zip.toByteArray()));
+        } finally {
+            badgeExportService.shutdown();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void zipExportThroughputPerRenderThreads() throws Exception {
+        List<Long> ids = LongStream.rangeClosed(1, BADGES).boxed().toList();
+
+        for (int threads : new TreeSet<>(List.of(1, 4, Runtime.getRuntime().availableProcessors()))) {
+            BadgeExportService badgeExportService = new BadgeExportService(participantRepository,
+                    mock(LaboratoryRepository.class), badgeService, 200, threads, 0);
+
+            try {
+                badgeExportService.exportBadges(ids.subList(0, WARM_UP_BADGES), BadgeExportFormat.ZIP)
+                        .writeTo(OutputStream.nullOutputStream());
+
+                long start = System.nanoTime();
+
+                badgeExportService.exportBadges(ids, BadgeExportFormat.ZIP).writeTo(OutputStream.nullOutputStream());
+
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                System.out.printf("%2d threads %8.0f badges/s%n", threads, BADGES / seconds);
+            } finally {
+                badgeExportService.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Lists the entries of a ZIP in the order they were written, checking that each one holds a PDF.
+     */
+    private static List<String> entryNames(byte[] zip) throws Exception {
+        List<String> names = new ArrayList<>();
+
+        try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+
+            while ((entry = input.getNextEntry()) != null) {
+                byte[] pdf = input.readAllBytes();
+
+                assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII), entry.getName());
+                names.add(entry.getName());
+            }
+        }
+
+        return names;
+    }
+
+    private static ParticipantSnapshotProjection participant(Long id) {
+        return new ParticipantSnapshotProjection() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getName() {
+                return "Participante " + id;
+            }
+
+            public String getCpf() {
+                return String.format("%03d.%03d.%03d-%02d", id % 1000, (id * 7) % 1000, (id * 13) % 1000, id % 100);
+            }
+
+            public String getType() {
+                return "LABORATORY_MEMBER";
+            }
+
+            public String getCnpj() {
+                return null;
+            }
+
+            public String getCorporateReason() {
+                return "Laboratório " + (id % 40) + " S.A.";
+            }
+
+            public Long getLaboratoryId() {
+                return id % 40;
+            }
+        };
+    }
+}
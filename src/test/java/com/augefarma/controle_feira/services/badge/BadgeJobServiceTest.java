@@ -0,0 +1,105 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeJobDto;
+import com.augefarma.controle_feira.enums.BadgeExportFormat;
+import com.augefarma.controle_feira.enums.BadgeJobStatus;
+import com.augefarma.controle_feira.exceptions.BadgeJobFailedException;
+import com.augefarma.controle_feira.exceptions.BadgeJobNotReadyException;
+import com.augefarma.controle_feira.exceptions.BadgeJobQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BadgeJobServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final BadgeExportService badgeExportService = mock(BadgeExportService.class);
+
+    @TempDir
+    private Path resultPath;
+
+    private BadgeJobService badgeJobService;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        badgeJobService.shutdown();
+    }
+
+    @Test
+    void jobsBeyondTheQueueAreRefused() throws Exception {
+        when(badgeExportService.exportBadges(any(), any())).thenReturn(outputStream -> awaitRelease());
+        badgeJobService = new BadgeJobService(badgeExportService, 1, 1, resultPath.toString(), 60);
+
+        BadgeJobDto running = badgeJobService.submit(List.of(1L), BadgeExportFormat.PDF);
+        awaitStatus(running.id(), BadgeJobStatus.RUNNING);
+
+        BadgeJobDto queued = badgeJobService.submit(List.of(2L), BadgeExportFormat.PDF);
+
+        assertEquals(BadgeJobStatus.QUEUED, badgeJobService.getJob(queued.id()).status());
+        assertThrows(BadgeJobQueueFullException.class,
+                () -> badgeJobService.submit(List.of(3L), BadgeExportFormat.PDF));
+        assertThrows(BadgeJobNotReadyException.class, () -> badgeJobService.download(running.id()));
+    }
+
+    @Test
+    void completedJobsCanBeDownloaded() throws Exception {
+        when(badgeExportService.exportBadges(any(), any()))
+                .thenReturn(outputStream -> outputStream.write("%PDF".getBytes(StandardCharsets.US_ASCII)));
+        badgeJobService = new BadgeJobService(badgeExportService, 1, 1, resultPath.toString(), 60);
+
+        BadgeJobDto job = badgeJobService.submit(List.of(1L, 1L, 2L), BadgeExportFormat.ZIP);
+        awaitStatus(job.id(), BadgeJobStatus.COMPLETED);
+
+        ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        badgeJobService.download(job.id()).writeTo(downloaded);
+
+        assertEquals(2, job.participants());
+        assertEquals("%PDF", downloaded.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void failedJobsReportTheirFailureOnDownload() throws Exception {
+        when(badgeExportService.exportBadges(any(), any())).thenThrow(new IllegalStateException("sem conexão"));
+        badgeJobService = new BadgeJobService(badgeExportService, 1, 1, resultPath.toString(), 60);
+
+        BadgeJobDto job = badgeJobService.submit(List.of(1L), BadgeExportFormat.PDF);
+        awaitStatus(job.id(), BadgeJobStatus.FAILED);
+
+        BadgeJobFailedException exception = assertThrows(BadgeJobFailedException.class,
+                () -> badgeJobService.download(job.id()));
+
+        assertTrue(exception.getMessage().contains(badgeJobService.getJob(job.id()).error()));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitStatus(String jobId, BadgeJobStatus status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (badgeJobService.getJob(jobId).status() != status && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(status, badgeJobService.getJob(jobId).status());
+    }
+}
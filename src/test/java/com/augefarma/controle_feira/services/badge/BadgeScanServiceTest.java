@@ -0,0 +1,76 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.exceptions.InvalidBadgeTokenException;
+import com.augefarma.controle_feira.services.participant.ParticipantSnapshotCacheService;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class BadgeScanServiceTest {
+
+    private static final ParticipantSnapshotDto PARTICIPANT = new ParticipantSnapshotDto(1234L, "Maria da Silva",
+            "123.456.789-00", ParticipantType.LABORATORY_MEMBER, null, "Laboratório Central S.A.", 56L);
+
+    private final BadgeTokenService badgeTokenService =
+            new BadgeTokenService(Base64.getEncoder().encodeToString(new byte[32]), 0);
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService =
+            mock(ParticipantSnapshotCacheService.class);
+    private final BadgeScanService badgeScanService =
+            new BadgeScanService(badgeTokenService, participantSnapshotCacheService, false);
+
+    @Test
+    void tokensResolveByParticipantId() {
+        when(participantSnapshotCacheService.findById(1234L)).thenReturn(Optional.of(PARTICIPANT));
+        when(participantSnapshotCacheService.findByCpf("123.456.789-00")).thenReturn(Optional.of(PARTICIPANT));
+
+        assertEquals(PARTICIPANT, badgeScanService.resolve(badgeTokenService.issue(new BadgeDto(PARTICIPANT))));
+        assertEquals(PARTICIPANT, badgeScanService.resolve("123.456.789-00"));
+    }
+
+    @Test
+    void forgedTokensAreRejectedBeforeAnyLookup() {
+        String forged = new BadgeTokenService(Base64.getEncoder().encodeToString(
+                "outra chave de assinatura dos crachás".getBytes(StandardCharsets.UTF_8)), 0)
+                .issue(new BadgeDto(PARTICIPANT));
+
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeScanService.resolve(forged));
+        assertEquals(Map.of(), badgeScanService.resolveAll(List.of(forged)));
+        verifyNoInteractions(participantSnapshotCacheService);
+    }
+
+    @Test
+    void tokensIssuedForAnotherLaboratoryAreRejected() {
+        String token = badgeTokenService.issue(new BadgeDto(PARTICIPANT));
+        ParticipantSnapshotDto moved = new ParticipantSnapshotDto(1234L, "Maria da Silva", "123.456.789-00",
+                ParticipantType.LABORATORY_MEMBER, null, "Laboratório Norte S.A.", 57L);
+        when(participantSnapshotCacheService.findById(1234L)).thenReturn(Optional.of(moved));
+        when(participantSnapshotCacheService.findAllById(List.of(1234L))).thenReturn(Map.of(1234L, moved));
+
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeScanService.resolve(token));
+        assertEquals(Map.of(), badgeScanService.resolveAll(List.of(token)));
+    }
+
+    @Test
+    void cpfScansAreRejectedWhenTokensAreRequired() {
+        BadgeScanService tokenRequiredScanService =
+                new BadgeScanService(badgeTokenService, participantSnapshotCacheService, true);
+
+        assertThrows(InvalidBadgeTokenException.class, () -> tokenRequiredScanService.resolve("123.456.789-00"));
+        assertEquals(Map.of(), tokenRequiredScanService.resolveAll(List.of("123.456.789-00")));
+        verifyNoInteractions(participantSnapshotCacheService);
+        assertThrows(IllegalStateException.class,
+                () -> new BadgeScanService(new BadgeTokenService("", 0), participantSnapshotCacheService, true));
+    }
+}
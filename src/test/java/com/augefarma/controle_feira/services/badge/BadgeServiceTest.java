@@ -0,0 +1,140 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfResources;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class BadgeServiceTest {
+
+    private static final int WARM_UP_BADGES = 200;
+    private static final int BADGES = 500;
+
+    // Pixels per QR code module when the vector QR code is rasterized
+    private static final int MODULE_PIXELS = 6;
+
+    private static final Pattern RECTANGLE = Pattern.compile("(\\S+) (\\S+) (\\S+) (\\S+) re");
+
+    private final QRCodeDecoderService qrCodeDecoderService = new QRCodeDecoderService(1, 4, 800, 1, 5000);
+
+    @AfterEach
+    void tearDown() {
+        qrCodeDecoderService.shutdown();
+    }
+
+    @Test
+    void vectorQRCodesDecodeToTheBadgePayload() throws Exception {
+        BadgeService badgeService = new BadgeService(QRCodeRendering.VECTOR,
+                new BadgeTemplateService(""), false, new BadgeTokenService("", 0));
+        BadgeDto badge = badge(7);
+        byte[] pdf = badgeService.generateBadge(badge);
+
+        assertFalse(new String(pdf, StandardCharsets.ISO_8859_1).contains("/Subtype/Image"));
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(pdf)))) {
+            PdfResources resources = pdfDoc.getFirstPage().getResources();
+            PdfName qrCodeName = resources.getResourceNames(PdfName.XObject).iterator().next();
+            PdfFormXObject qrCode = resources.getForm(qrCodeName);
+
+            assertNotNull(qrCode);
+            assertEquals(badge.cpf(), qrCodeDecoderService.decode(rasterize(qrCode)));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void renderCostPerQRCodeRendering() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        for (QRCodeRendering rendering : QRCodeRendering.values()) {
+            BadgeService badgeService = new BadgeService(rendering,
+                    new BadgeTemplateService(""), false, new BadgeTokenService("", 0));
+
+            for (int index = 0; index < WARM_UP_BADGES; index++) {
+                badgeService.generateBadge(badge(index));
+            }
+
+            long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+            long totalSize = 0;
+
+            for (int index = 0; index < BADGES; index++) {
+                totalSize += badgeService.generateBadge(badge(index)).length;
+            }
+
+            double cpuMicrosPerBadge = (threadMXBean.getCurrentThreadCpuTime() - cpuStart) / 1_000.0 / BADGES;
+            int averageSize = (int) (totalSize / BADGES);
+
+            System.out.printf("%-6s %8.1f us CPU/badge %7d bytes/badge%n", rendering, cpuMicrosPerBadge, averageSize);
+        }
+    }
+
+    /**
+     * Paints the rectangles of a vector QR code onto a white PNG, the way a printer would, one user space unit per
+     * module.
+     */
+    private static byte[] rasterize(PdfFormXObject qrCode) throws Exception {
+        Rectangle box = qrCode.getBBox().toRectangle();
+        int width = Math.round(box.getWidth());
+        int height = Math.round(box.getHeight());
+        BufferedImage image = new BufferedImage(width * MODULE_PIXELS, height * MODULE_PIXELS,
+                BufferedImage.TYPE_BYTE_GRAY);
+
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setColor(Color.BLACK);
+
+        Matcher rectangles = RECTANGLE.matcher(new String(qrCode.getPdfObject().getBytes(),
+                StandardCharsets.US_ASCII));
+
+        while (rectangles.find()) {
+            float x = Float.parseFloat(rectangles.group(1));
+            float y = Float.parseFloat(rectangles.group(2));
+            float rectangleWidth = Float.parseFloat(rectangles.group(3));
+            float rectangleHeight = Float.parseFloat(rectangles.group(4));
+
+            // PDF coordinates grow upwards, image rows grow downwards
+            graphics.fillRect(Math.round(x * MODULE_PIXELS),
+                    Math.round((height - y - rectangleHeight) * MODULE_PIXELS),
+                    Math.round(rectangleWidth * MODULE_PIXELS), Math.round(rectangleHeight * MODULE_PIXELS));
+        }
+
+        graphics.dispose();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+
+        return outputStream.toByteArray();
+    }
+
+    private BadgeDto badge(int index) {
+        return new BadgeDto((long) index, ParticipantType.LABORATORY_MEMBER, (long) (index % 40),
+                "Participante " + index,
+                "Laboratório " + (index % 40) + " S.A.",
+                String.format("%03d.%03d.%03d-%02d", index % 1000, (index * 7) % 1000, (index * 13) % 1000,
+                        index % 100));
+    }
+}
@@ -0,0 +1,87 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BadgeTemplateTest {
+
+    private static final int WARM_UP_BADGES = 300;
+    private static final int BADGES = 1000;
+
+    @Test
+    @Tag("benchmark")
+    void renderCostWithAndWithoutTemplate() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        BadgeTemplateService badgeTemplateService = new BadgeTemplateService("");
+
+        for (boolean templateEnabled : new boolean[]{false, true}) {
+            BadgeService badgeService = new BadgeService(QRCodeRendering.VECTOR,
+                    badgeTemplateService, templateEnabled, new BadgeTokenService("", 0));
+
+            for (int index = 0; index < WARM_UP_BADGES; index++) {
+                badgeService.generateBadge(badge(index));
+            }
+
+            long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+
+            for (int index = 0; index < BADGES; index++) {
+                badgeService.generateBadge(badge(index));
+            }
+
+            double cpuMicrosPerBadge = (threadMXBean.getCurrentThreadCpuTime() - cpuStart) / 1_000.0 / BADGES;
+
+            System.out.printf("%-8s %8.1f us CPU/badge%n", templateEnabled ? "template" : "layout", cpuMicrosPerBadge);
+        }
+    }
+
+    @Test
+    void templateBadgesCarryTheTextAndTheirVariantCaption() throws Exception {
+        BadgeService badgeService = new BadgeService(QRCodeRendering.VECTOR,
+                new BadgeTemplateService(""), true, new BadgeTokenService("", 0));
+
+        for (ParticipantType type : ParticipantType.values()) {
+            BadgeDto badge = new BadgeDto(1L, type, 1L, "Maria da Silva", "Farmácia Central LTDA", "123.456.789-00");
+
+            try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(
+                    new ByteArrayInputStream(badgeService.generateBadge(badge))))) {
+                String text = PdfTextExtractor.getTextFromPage(pdfDoc.getFirstPage());
+
+                assertEquals(1, pdfDoc.getNumberOfPages());
+                assertTrue(text.contains("Maria da Silva"));
+                assertTrue(text.contains("Farmácia Central LTDA"));
+                assertTrue(text.contains(type == ParticipantType.LABORATORY_MEMBER
+                        ? "LABORATÓRIO" : "REPRESENTANTE DE FARMÁCIA"));
+            }
+        }
+    }
+
+    @Test
+    void badgesWithoutATypeAreRejected() {
+        BadgeService badgeService = new BadgeService(QRCodeRendering.VECTOR,
+                new BadgeTemplateService(""), true, new BadgeTokenService("", 0));
+        BadgeDto badge = new BadgeDto(1L, null, null, "Maria da Silva", "Farmácia Central LTDA", "123.456.789-00");
+
+        assertThrows(IllegalArgumentException.class, () -> badgeService.generateBadge(badge));
+    }
+
+    private BadgeDto badge(int index) {
+        return new BadgeDto((long) index, ParticipantType.values()[index % 2], (long) (index % 40),
+                "Participante " + index,
+                "Laboratório " + (index % 40) + " S.A.",
+                String.format("%03d.%03d.%03d-%02d", index % 1000, (index * 7) % 1000, (index * 13) % 1000,
+                        index % 100));
+    }
+}
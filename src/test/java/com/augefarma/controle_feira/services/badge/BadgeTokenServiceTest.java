@@ -0,0 +1,129 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.dtos.badge.BadgeDto;
+import com.augefarma.controle_feira.dtos.badge.BadgeTokenDto;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.augefarma.controle_feira.enums.QRCodeRendering;
+import com.augefarma.controle_feira.exceptions.InvalidBadgeTokenException;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageConfig;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.Arrays;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BadgeTokenServiceTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String OTHER_SECRET = Base64.getEncoder()
+            .encodeToString("outra chave de assinatura dos crachás".getBytes(StandardCharsets.UTF_8));
+
+    private final BadgeTokenService badgeTokenService = new BadgeTokenService(SECRET, 0);
+
+    @Test
+    void issuedTokensVerifyInMemory() {
+        String token = badgeTokenService.issue(badge());
+
+        assertTrue(token.length() < 40, token);
+        assertEquals(new BadgeTokenDto(1234L, ParticipantType.LABORATORY_MEMBER, 56L, LocalDate.now()),
+                badgeTokenService.verify(token));
+    }
+
+    @Test
+    void forgedOrCorruptTokensAreRejected() {
+        String token = badgeTokenService.issue(badge());
+        // Changes the participant ID, keeping the signature
+        int index = BadgeTokenService.TOKEN_PREFIX.length() + 2;
+        String tampered = token.substring(0, index) + (token.charAt(index) == 'A' ? 'B' : 'A')
+                + token.substring(index + 1);
+
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeTokenService.verify(tampered));
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeTokenService.verify("CF1.not*base64"));
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeTokenService.verify("CF1.AAAA"));
+        assertThrows(InvalidBadgeTokenException.class,
+                () -> new BadgeTokenService(OTHER_SECRET, 0).verify(token));
+        assertThrows(InvalidBadgeTokenException.class, () -> new BadgeTokenService("", 0).verify(token));
+        assertFalse(badgeTokenService.isToken("123.456.789-00"));
+    }
+
+    @Test
+    void signedTokensWithAnUnknownLayoutAreRejected() {
+        String valid = sign(payload(0));
+        String unknownType = sign(payload(2));
+        String trailingByte = sign(Arrays.append(payload(0), (byte) 0));
+
+        assertEquals(1L, badgeTokenService.verify(valid).participantId());
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeTokenService.verify(unknownType));
+        assertThrows(InvalidBadgeTokenException.class, () -> badgeTokenService.verify(trailingByte));
+    }
+
+    @Test
+    void badgeQRCodesCarryTheToken() throws Exception {
+        BadgeService badgeService = new BadgeService(QRCodeRendering.PNG,
+                new BadgeTemplateService(""), true, badgeTokenService);
+        BitMatrix qrCode = badgeService.encodeQRCode(badge());
+
+        String scanned = new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(
+                new BufferedImageLuminanceSource(MatrixToImageWriter.toBufferedImage(qrCode,
+                        new MatrixToImageConfig()))))).getText();
+
+        assertEquals(1234L, badgeTokenService.verify(scanned).participantId());
+        assertFalse(scanned.contains("123.456.789-00"));
+    }
+
+    /**
+     * A token payload for participant 1, without a laboratory, issued today, with the given type byte.
+     */
+    private static byte[] payload(int type) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(type);
+        payload.write(1);
+        payload.write(0);
+
+        for (long day = LocalDate.now().toEpochDay(); ; day >>>= 7) {
+            if ((day & ~0x7FL) == 0) {
+                payload.write((int) day);
+                return payload.toByteArray();
+            }
+
+            payload.write((int) (day & 0x7F) | 0x80);
+        }
+    }
+
+    /**
+     * Signs an arbitrary payload with the test secret, the way {@link BadgeTokenService} signs the ones it issues.
+     */
+    private static String sign(byte[] payload) {
+        HMac hMac = new HMac(new SHA256Digest());
+        hMac.init(new KeyParameter(Base64.getDecoder().decode(SECRET)));
+        hMac.update(BadgeTokenService.TOKEN_PREFIX.getBytes(StandardCharsets.US_ASCII), 0,
+                BadgeTokenService.TOKEN_PREFIX.length());
+        hMac.update(payload, 0, payload.length);
+
+        byte[] mac = new byte[hMac.getMacSize()];
+        hMac.doFinal(mac, 0);
+
+        return BadgeTokenService.TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Arrays.concatenate(payload, Arrays.copyOf(mac, 12)));
+    }
+
+    private static BadgeDto badge() {
+        return new BadgeDto(1234L, ParticipantType.LABORATORY_MEMBER, 56L, "Maria da Silva",
+                "Laboratório Central S.A.", "123.456.789-00");
+    }
+}
@@ -0,0 +1,161 @@
+package com.augefarma.controle_feira.services.badge;
+
+import com.augefarma.controle_feira.exceptions.UnreadableFrameException;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QRCodeDecoderServiceTest {
+
+    private static final int WARM_UP_FRAMES = 5;
+    private static final int FRAMES = 20;
+    private static final int[][] RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}, {3840, 2160}};
+    private static final String TOKEN = "CF1.AQ0BgZ7JBXc3xq2WJtY_e3nP1Q";
+
+    private final QRCodeDecoderService qrCodeDecoderService = new QRCodeDecoderService(1, 4, 800, 0.6, 5000);
+
+    // The whole frame at full resolution, for comparison
+    private final QRCodeDecoderService fullFrameDecoderService =
+            new QRCodeDecoderService(1, 4, Integer.MAX_VALUE, 1, 5000);
+
+    @AfterEach
+    void tearDown() {
+        qrCodeDecoderService.shutdown();
+        fullFrameDecoderService.shutdown();
+    }
+
+    @Test
+    void badgeCodesAreReadFromCameraFrames() throws Exception {
+        assertEquals(TOKEN, qrCodeDecoderService.decode(cameraFrame(640, 480, "jpg")));
+        assertEquals(TOKEN, qrCodeDecoderService.decode(cameraFrame(1280, 720, "png")));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void decodeLatencyPerResolution() throws Exception {
+        for (int[] resolution : RESOLUTIONS) {
+            for (String format : new String[]{"jpg", "png"}) {
+                byte[] frame = cameraFrame(resolution[0], resolution[1], format);
+                double fullFrameMillis = millisPerFrame(fullFrameDecoderService, frame);
+                double regionMillis = millisPerFrame(qrCodeDecoderService, frame);
+
+                // Full-resolution frames may not decode at all: the modules get too large for the binarizer
+                System.out.printf("%4dx%-4d %s %8d bytes %7.1f ms/frame full %7.1f ms/frame region%n",
+                        resolution[0], resolution[1], format, frame.length, fullFrameMillis, regionMillis);
+            }
+        }
+    }
+
+    @Test
+    void framesWithoutAReadableCodeAreRejected() throws Exception {
+        byte[] emptyFrame = encode(background(640, 480), "jpg");
+
+        assertThrows(UnreadableFrameException.class, () -> qrCodeDecoderService.decode(emptyFrame));
+        assertThrows(UnreadableFrameException.class,
+                () -> qrCodeDecoderService.decode("not an image".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * @return the mean latency, or NaN if the frame could not be decoded
+     */
+    private static double millisPerFrame(QRCodeDecoderService decoderService, byte[] frame) {
+        try {
+            decoderService.decode(frame);
+        } catch (UnreadableFrameException exception) {
+            return Double.NaN;
+        }
+
+        for (int index = 1; index < WARM_UP_FRAMES; index++) {
+            decoderService.decode(frame);
+        }
+
+        long start = System.nanoTime();
+
+        for (int index = 0; index < FRAMES; index++) {
+            assertEquals(TOKEN, decoderService.decode(frame));
+        }
+
+        return (System.nanoTime() - start) / 1_000_000.0 / FRAMES;
+    }
+
+    /**
+     * A frame as a kiosk camera would take it: uneven lighting, sensor noise, and the badge QR code a little off
+     * center, covering about a third of the frame's height.
+     */
+    private static byte[] cameraFrame(int width, int height, String format) throws Exception {
+        BufferedImage image = background(width, height);
+        BitMatrix qrCode = new QRCodeWriter().encode(TOKEN, BarcodeFormat.QR_CODE, 0, 0);
+        int moduleSize = Math.max(1, height / 3 / qrCode.getWidth());
+        int left = width / 2 - qrCode.getWidth() * moduleSize / 2 + width / 40;
+        int top = height / 2 - qrCode.getHeight() * moduleSize / 2 - height / 40;
+
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(230, 230, 225));
+        graphics.fillRect(left, top, qrCode.getWidth() * moduleSize, qrCode.getHeight() * moduleSize);
+        graphics.setColor(new Color(30, 30, 35));
+
+        for (int y = 0; y < qrCode.getHeight(); y++) {
+            for (int x = 0; x < qrCode.getWidth(); x++) {
+                if (qrCode.get(x, y)) {
+                    graphics.fillRect(left + x * moduleSize, top + y * moduleSize, moduleSize, moduleSize);
+                }
+            }
+        }
+
+        graphics.dispose();
+        addNoise(image);
+
+        return encode(image, format);
+    }
+
+    private static BufferedImage background(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(90, 80, 70), width, height, new Color(170, 165, 150)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        return image;
+    }
+
+    private static void addNoise(BufferedImage image) {
+        Random random = new Random(42);
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int noise = random.nextInt(25) - 12;
+                int red = channel(((rgb >> 16) & 0xFF) + noise);
+                int green = channel(((rgb >> 8) & 0xFF) + noise);
+                int blue = channel((rgb & 0xFF) + noise);
+
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+    }
+
+    private static int channel(int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,63 @@
+package com.augefarma.controle_feira.services.participant;
+
+import com.augefarma.controle_feira.repositories.participant.ParticipantRepository;
+import com.augefarma.controle_feira.repositories.participant.ParticipantSnapshotProjection;
+import com.augefarma.controle_feira.services.transaction.AfterCommitExecutor;
+import org.junit.jupiter.api.Test;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ParticipantSnapshotCacheServiceTest {
+
+    private final ParticipantRepository participantRepository = mock(ParticipantRepository.class);
+    private final ParticipantSnapshotCacheService participantSnapshotCacheService =
+            new ParticipantSnapshotCacheService(participantRepository, new AfterCommitExecutor(), 100);
+
+    @Test
+    void cachedSnapshotsAreServedUntilInvalidated() {
+        ParticipantSnapshotProjection projection = projection("Maria da Silva");
+        when(participantRepository.findSnapshotById(1234L)).thenReturn(Optional.of(projection));
+
+        participantSnapshotCacheService.findById(1234L);
+        participantSnapshotCacheService.findById(1234L);
+        assertEquals("Maria da Silva", participantSnapshotCacheService.findByCpf("123.456.789-00")
+                .orElseThrow().name());
+        verify(participantRepository, times(1)).findSnapshotById(1234L);
+
+        participantSnapshotCacheService.invalidateParticipant(1234L);
+        participantSnapshotCacheService.findById(1234L);
+        verify(participantRepository, times(2)).findSnapshotById(1234L);
+    }
+
+    @Test
+    void snapshotsLoadedAcrossAnInvalidationAreNotKept() {
+        ParticipantSnapshotProjection stale = projection("Maria da Silva");
+        ParticipantSnapshotProjection renamed = projection("Maria da Silva Souza");
+
+        // The participant is renamed while the old row is being read
+        when(participantRepository.findSnapshotById(1234L)).thenAnswer(invocation -> {
+            participantSnapshotCacheService.invalidateParticipant(1234L);
+            return Optional.of(stale);
+        }).thenReturn(Optional.of(renamed));
+
+        assertEquals("Maria da Silva", participantSnapshotCacheService.findById(1234L).orElseThrow().name());
+        assertEquals("Maria da Silva Souza", participantSnapshotCacheService.findById(1234L).orElseThrow().name());
+        assertEquals("Maria da Silva Souza", participantSnapshotCacheService.findById(1234L).orElseThrow().name());
+        verify(participantRepository, times(2)).findSnapshotById(1234L);
+    }
+
+    private static ParticipantSnapshotProjection projection(String name) {
+        ParticipantSnapshotProjection projection = mock(ParticipantSnapshotProjection.class);
+        when(projection.getId()).thenReturn(1234L);
+        when(projection.getName()).thenReturn(name);
+        when(projection.getCpf()).thenReturn("123.456.789-00");
+        when(projection.getType()).thenReturn("PHARMACY_REPRESENTATIVE");
+
+        return projection;
+    }
+}
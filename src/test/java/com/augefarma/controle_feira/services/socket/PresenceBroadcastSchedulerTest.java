@@ -0,0 +1,81 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.event.ListUpdateEventDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceDeltaDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceBroadcastSchedulerTest {
+
+    private final PresenceRegistry presenceRegistry = new PresenceRegistry();
+    private final BlockingQueue<PresenceDeltaDto> globalDeltas = new LinkedBlockingQueue<>();
+
+    // Only the deltas for everyone present, as sent to /topic/realtime
+    private final ApplicationEventPublisher eventPublisher = event -> {
+        if (event instanceof ListUpdateEventDto update && update.getSegment() == null
+                && update.getLaboratoryId() == null) {
+            globalDeltas.add(update.getDelta());
+        }
+    };
+
+    private final PresenceBroadcastScheduler presenceBroadcastScheduler =
+            new PresenceBroadcastScheduler(presenceRegistry, eventPublisher, new PresenceHeadcount(), 1);
+
+    @AfterEach
+    void tearDown() {
+        presenceBroadcastScheduler.shutdown();
+    }
+
+    @Test
+    void chainedDeltasEndInTheRegistryState() throws Exception {
+        // Two gates racing on the same participant each round, one letting them in and the other out
+        CyclicBarrier round = new CyclicBarrier(2);
+        List<CompletableFuture<Void>> gates = List.of(
+                CompletableFuture.runAsync(() -> churn(round, true)),
+                CompletableFuture.runAsync(() -> churn(round, false)));
+        CompletableFuture.allOf(gates.toArray(CompletableFuture[]::new)).get();
+
+        Set<Long> client = new HashSet<>();
+        long clientSequence = 0;
+
+        while (clientSequence < presenceRegistry.getVersion()) {
+            PresenceDeltaDto delta = globalDeltas.poll(5, TimeUnit.SECONDS);
+
+            assertTrue(delta != null, "Delta até a versão " + presenceRegistry.getVersion() + " não recebido");
+            assertEquals(clientSequence, delta.fromSequence());
+
+            PresenceRegistryTest.apply(client, delta);
+            clientSequence = delta.sequence();
+        }
+
+        assertEquals(presenceRegistry.getPresentParticipantIds(), client);
+    }
+
+    private void churn(CyclicBarrier round, boolean arriving) {
+        for (long participantId = 0; participantId < 20_000; participantId++) {
+            PresenceRegistryTest.await(round);
+
+            if (arriving) {
+                presenceRegistry.addPharmacyRepresentative(PresenceRegistryTest.pharmacyRepresentative(participantId),
+                        EventSegment.FAIR);
+            } else {
+                presenceRegistry.removePharmacyRepresentative(participantId);
+            }
+
+            presenceBroadcastScheduler.markDirty();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.event.PresenceResyncEventDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.postgresql.core.Notification;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two instances synchronized through an in-memory stand-in for the PostgreSQL channel, which delivers every
+ * notification to every listening connection.
+ */
+class PresenceClusterServiceTest {
+
+    private static final int POLL_TIMEOUT_MS = 20;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<BlockingQueue<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<String> notified = new CopyOnWriteArrayList<>();
+    private final List<PresenceClusterService> started = new ArrayList<>();
+
+    private volatile boolean dropNextNotification;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (PresenceClusterService presenceClusterService : started) {
+            presenceClusterService.shutdown();
+        }
+    }
+
+    @Test
+    void changesReachTheOtherInstanceInOrder() throws Exception {
+        Node first = startNode();
+        Node second = startNode();
+
+        // Every other participant leaves right after arriving, so reordered messages would leave them present
+        for (long participantId = 1; participantId <= 200; participantId++) {
+            first.registry().addPharmacyRepresentative(pharmacyRepresentative(participantId), EventSegment.FAIR);
+
+            if (participantId % 2 == 0) {
+                first.registry().removePharmacyRepresentative(participantId);
+            }
+        }
+
+        // Two gates race on each of these, one letting them in and the other out; whichever order the first
+        // instance applied, the second must end up the same
+        CyclicBarrier round = new CyclicBarrier(2);
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> race(first.registry(), round, true)),
+                CompletableFuture.runAsync(() -> race(first.registry(), round, false))).get();
+
+        first.registry().enterSegment(1L, EventSegment.PARTY);
+        second.registry().addPharmacyRepresentative(pharmacyRepresentative(1000L), EventSegment.BUFFET);
+
+        awaitUntil(() -> first.registry().isPresent(1000L)
+                && second.registry().snapshotForSegment(EventSegment.PARTY).getPharmacyRepresentatives().size() == 1
+                && second.registry().getPresentParticipantIds().equals(first.registry().getPresentParticipantIds()));
+
+        Set<Long> present = first.registry().getPresentParticipantIds();
+        assertTrue(present.stream().filter(participantId -> participantId <= 200).allMatch(id -> id % 2 == 1));
+        assertEquals(100, present.stream().filter(participantId -> participantId <= 200).count());
+        verify(first.eventPublisher(), never()).publishEvent(any());
+        verify(second.eventPublisher(), never()).publishEvent(any());
+    }
+
+    @Test
+    void redeliveredChangesAreIgnored() throws Exception {
+        Node first = startNode();
+        Node second = startNode();
+
+        first.registry().addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR);
+        awaitUntil(() -> notified.size() == 1);
+        String arrival = notified.get(0);
+
+        first.registry().removePharmacyRepresentative(1L);
+        first.registry().addPharmacyRepresentative(pharmacyRepresentative(2L), EventSegment.FAIR);
+        awaitUntil(() -> second.registry().isPresent(2L));
+
+        deliver(arrival);
+        first.registry().addPharmacyRepresentative(pharmacyRepresentative(3L), EventSegment.FAIR);
+        awaitUntil(() -> second.registry().isPresent(3L));
+
+        assertEquals(Set.of(2L, 3L), second.registry().getPresentParticipantIds());
+        verify(second.eventPublisher(), never()).publishEvent(any());
+    }
+
+    @Test
+    void aMissedChangeTriggersAResync() throws Exception {
+        Node first = startNode();
+        Node second = startNode();
+
+        first.registry().addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR);
+        awaitUntil(() -> second.registry().isPresent(1L));
+
+        dropNextNotification = true;
+        first.registry().removePharmacyRepresentative(1L);
+        awaitUntil(() -> !dropNextNotification);
+        first.registry().addPharmacyRepresentative(pharmacyRepresentative(2L), EventSegment.FAIR);
+
+        verify(second.eventPublisher(), timeout(5000)).publishEvent(any(PresenceResyncEventDto.class));
+        verify(first.eventPublisher(), never()).publishEvent(any());
+    }
+
+    private static void race(PresenceRegistry presenceRegistry, CyclicBarrier round, boolean arriving) {
+        for (long participantId = 10_000; participantId < 12_000; participantId++) {
+            PresenceRegistryTest.await(round);
+
+            // Repeated, so the two gates keep colliding on the participant for the whole round
+            for (int attempt = 0; attempt < 10; attempt++) {
+                if (arriving) {
+                    presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(participantId),
+                            EventSegment.FAIR);
+                } else {
+                    presenceRegistry.removePharmacyRepresentative(participantId);
+                }
+            }
+        }
+    }
+
+    private Node startNode() throws Exception {
+        PresenceRegistry presenceRegistry = new PresenceRegistry();
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        PresenceClusterService presenceClusterService = new PresenceClusterService(listeningDataSource(),
+                notifyingJdbcTemplate(), objectMapper, presenceRegistry, new PresenceHeadcount(),
+                mock(PresenceBroadcastScheduler.class), eventPublisher, true, "presence_changes", POLL_TIMEOUT_MS);
+
+        presenceClusterService.subscribe();
+        presenceClusterService.start();
+        started.add(presenceClusterService);
+
+        return new Node(presenceRegistry, eventPublisher);
+    }
+
+    private DataSource listeningDataSource() throws Exception {
+        BlockingQueue<String> notifications = new LinkedBlockingQueue<>();
+        PGConnection pgConnection = mock(PGConnection.class);
+        Connection connection = mock(Connection.class);
+        DataSource dataSource = mock(DataSource.class);
+
+        when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> {
+            String payload = notifications.poll(invocation.<Integer>getArgument(0), TimeUnit.MILLISECONDS);
+
+            if (payload == null) {
+                return null;
+            }
+
+            // Like the driver, hands over everything received so far
+            List<String> payloads = new ArrayList<>(List.of(payload));
+            notifications.drainTo(payloads);
+
+            return payloads.stream()
+                    .map(parameter -> new Notification("presence_changes", 0, parameter))
+                    .toArray(PGNotification[]::new);
+        });
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        listeners.add(notifications);
+
+        return dataSource;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JdbcTemplate notifyingJdbcTemplate() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+        doAnswer(invocation -> {
+            String payload = invocation.getArgument(3);
+            notified.add(payload);
+
+            if (dropNextNotification) {
+                dropNextNotification = false;
+            } else {
+                deliver(payload);
+            }
+
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(ResultSetExtractor.class), any(), any());
+
+        return jdbcTemplate;
+    }
+
+    private void deliver(String payload) {
+        listeners.forEach(listener -> listener.add(payload));
+    }
+
+    private static PharmacyRepresentativeResponseDto pharmacyRepresentative(long participantId) {
+        return new PharmacyRepresentativeResponseDto(new ParticipantSnapshotDto(participantId,
+                "Representante " + participantId, String.format("%011d", participantId),
+                ParticipantType.PHARMACY_REPRESENTATIVE, "12.345.678/0001-90", "Farmácia Central Ltda.", null));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condição não atingida em 5 s");
+            Thread.sleep(POLL_TIMEOUT_MS);
+        }
+    }
+
+    private record Node(PresenceRegistry registry, ApplicationEventPublisher eventPublisher) {
+    }
+}
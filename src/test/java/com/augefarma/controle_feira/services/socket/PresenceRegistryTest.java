@@ -0,0 +1,179 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.laboratory.LaboratoryMemberResponseDto;
+import com.augefarma.controle_feira.dtos.participant.ParticipantSnapshotDto;
+import com.augefarma.controle_feira.dtos.pharmacy_representative.PharmacyRepresentativeResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.PresenceDeltaDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.ParticipantType;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceRegistryTest {
+
+    private final PresenceRegistry presenceRegistry = new PresenceRegistry();
+
+    @Test
+    void participantsAreAddedOnceAndRemoved() {
+        PresenceRegistry.PresenceChange arrival =
+                presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR);
+        presenceRegistry.addLaboratoryMember(laboratoryMember(2L, 7L), 7L, EventSegment.BUFFET);
+
+        assertTrue(arrival.arrival());
+        assertNull(presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR));
+        assertEquals(Set.of(1L, 2L), presenceRegistry.getPresentParticipantIds());
+
+        PresenceRegistry.PresenceChange departure = presenceRegistry.removeLaboratoryMember(2L);
+
+        assertFalse(departure.isAddition());
+        assertEquals(Set.of(EventSegment.BUFFET), departure.segments());
+        assertNull(presenceRegistry.removeLaboratoryMember(2L));
+        assertNull(presenceRegistry.removePharmacyRepresentative(2L));
+        assertEquals(Set.of(1L), presenceRegistry.getPresentParticipantIds());
+    }
+
+    @Test
+    void enteringASegmentOnlyExtendsPresentParticipants() {
+        presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR);
+
+        PresenceRegistry.PresenceChange entered = presenceRegistry.enterSegment(1L, EventSegment.PARTY);
+
+        assertFalse(entered.arrival());
+        assertFalse(entered.isAttendanceChange());
+        assertEquals(Set.of(EventSegment.PARTY), entered.segments());
+        assertNull(presenceRegistry.enterSegment(1L, EventSegment.PARTY));
+        assertNull(presenceRegistry.enterSegment(2L, EventSegment.PARTY));
+        assertFalse(presenceRegistry.isPresent(2L));
+        assertEquals(1, presenceRegistry.snapshotForSegment(EventSegment.PARTY).getPharmacyRepresentatives().size());
+        assertEquals(1, presenceRegistry.snapshotForSegment(EventSegment.FAIR).getPharmacyRepresentatives().size());
+        assertEquals(0, presenceRegistry.snapshotForSegment(EventSegment.BUFFET).getPharmacyRepresentatives().size());
+    }
+
+    @Test
+    void snapshotsAreReusedUntilTheVersionMoves() {
+        EntitiesListResponseDto empty = presenceRegistry.snapshot();
+        presenceRegistry.addLaboratoryMember(laboratoryMember(1L, 7L), 7L, EventSegment.FAIR);
+        EntitiesListResponseDto first = presenceRegistry.snapshot();
+
+        // Changes that change nothing do not move the version
+        presenceRegistry.addLaboratoryMember(laboratoryMember(1L, 7L), 7L, EventSegment.FAIR);
+        presenceRegistry.removePharmacyRepresentative(1L);
+
+        assertEquals(0, empty.getVersion());
+        assertEquals(1, first.getVersion());
+        assertSame(first, presenceRegistry.snapshot());
+        assertSame(presenceRegistry.snapshotForLaboratory(7L), presenceRegistry.snapshotForLaboratory(7L));
+
+        presenceRegistry.removeLaboratoryMember(1L);
+
+        assertEquals(2, presenceRegistry.snapshot().getVersion());
+        assertEquals(List.of(), presenceRegistry.snapshotForLaboratory(7L).getLaboratoryMembers());
+    }
+
+    @Test
+    void parallelGatesLoseNoChange() throws Exception {
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> scans = new ArrayList<>();
+
+            for (long participantId = 1; participantId <= 4000; participantId++) {
+                long id = participantId;
+                scans.add(gates.submit(() -> {
+                    presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(id), EventSegment.FAIR);
+                    presenceRegistry.enterSegment(id, EventSegment.BUFFET);
+
+                    if (id % 4 == 0) {
+                        presenceRegistry.removePharmacyRepresentative(id);
+                    }
+                }));
+            }
+
+            for (Future<?> scan : scans) {
+                scan.get();
+            }
+        } finally {
+            gates.shutdown();
+        }
+
+        PresenceRegistry.PresenceChangeBatch batch = presenceRegistry.drainChanges();
+
+        // 4000 arrivals, 4000 segment entries and 1000 departures, each with its own version
+        assertEquals(9000, batch.changes().size());
+        assertEquals(9000, presenceRegistry.getVersion());
+        assertEquals(3000, presenceRegistry.snapshot().getPharmacyRepresentatives().size());
+        assertEquals(3000, presenceRegistry.snapshotForSegment(EventSegment.BUFFET)
+                .getPharmacyRepresentatives().size());
+    }
+
+    @Test
+    void concurrentChangesToOneParticipantAreLoggedInTheOrderApplied() throws Exception {
+        Set<Long> client = new HashSet<>();
+        CyclicBarrier start = new CyclicBarrier(2);
+
+        for (int round = 0; round < 2000; round++) {
+            CompletableFuture<Void> arrival = CompletableFuture.runAsync(() -> {
+                await(start);
+                presenceRegistry.addPharmacyRepresentative(pharmacyRepresentative(1L), EventSegment.FAIR);
+            });
+            CompletableFuture<Void> departure = CompletableFuture.runAsync(() -> {
+                await(start);
+                presenceRegistry.removePharmacyRepresentative(1L);
+            });
+
+            CompletableFuture.allOf(arrival, departure).get();
+
+            PresenceRegistry.PresenceChangeBatch batch = presenceRegistry.drainChanges();
+
+            if (batch != null) {
+                apply(client, batch.toDelta(batch.fromSequence(), change -> true));
+            }
+
+            assertEquals(presenceRegistry.getPresentParticipantIds(), client, "rodada " + round);
+        }
+    }
+
+    /**
+     * Applies a delta the way clients do: removals first, then additions.
+     */
+    static void apply(Set<Long> client, PresenceDeltaDto delta) {
+        client.removeAll(delta.removedParticipantIds());
+        delta.addedPharmacyRepresentatives().forEach(added -> client.add(added.getId()));
+        delta.addedLaboratoryMembers().forEach(added -> client.add(added.getId()));
+    }
+
+    static PharmacyRepresentativeResponseDto pharmacyRepresentative(long participantId) {
+        return new PharmacyRepresentativeResponseDto(new ParticipantSnapshotDto(participantId,
+                "Representante " + participantId, String.format("%011d", participantId),
+                ParticipantType.PHARMACY_REPRESENTATIVE, "12.345.678/0001-90", "Farmácia Central Ltda.", null));
+    }
+
+    private static LaboratoryMemberResponseDto laboratoryMember(long participantId, long laboratoryId) {
+        return new LaboratoryMemberResponseDto(new ParticipantSnapshotDto(participantId, "Membro " + participantId,
+                String.format("%011d", participantId), ParticipantType.LABORATORY_MEMBER, null,
+                "Laboratório Central S.A.", laboratoryId));
+    }
+
+    static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.augefarma.controle_feira.services.socket;
+
+import com.augefarma.controle_feira.dtos.real_time.EntitiesListResponseDto;
+import com.augefarma.controle_feira.dtos.real_time.SerializedPayloadDto;
+import com.augefarma.controle_feira.enums.EventSegment;
+import com.augefarma.controle_feira.enums.PayloadEncoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PresenceSnapshotCacheTest {
+
+    private final PresenceSnapshotEncoder presenceSnapshotEncoder = new PresenceSnapshotEncoder(new ObjectMapper());
+
+    @Test
+    void eachScopeIsSerializedOncePerVersionAndEncoding() {
+        PresenceRegistry presenceRegistry = new PresenceRegistry();
+        PresenceSnapshotCache presenceSnapshotCache = new PresenceSnapshotCache(presenceRegistry,
+                presenceSnapshotEncoder);
+        presenceRegistry.addPharmacyRepresentative(PresenceRegistryTest.pharmacyRepresentative(1L), EventSegment.FAIR);
+
+        SerializedPayloadDto everyone = presenceSnapshotCache.getSerializedSnapshot(PayloadEncoding.JSON);
+        SerializedPayloadDto fair = presenceSnapshotCache.getSerializedSegmentSnapshot(EventSegment.FAIR,
+                PayloadEncoding.JSON);
+        SerializedPayloadDto laboratory = presenceSnapshotCache.getSerializedLaboratorySnapshot(7L,
+                PayloadEncoding.CBOR);
+
+        assertSame(everyone, presenceSnapshotCache.getSerializedSnapshot());
+        assertSame(fair, presenceSnapshotCache.getSerializedSegmentSnapshot(EventSegment.FAIR, PayloadEncoding.JSON));
+        assertSame(laboratory, presenceSnapshotCache.getSerializedLaboratorySnapshot(7L, PayloadEncoding.CBOR));
+        assertNotSame(fair, presenceSnapshotCache.getSerializedSegmentSnapshot(EventSegment.BUFFET,
+                PayloadEncoding.JSON));
+        assertNotSame(fair, presenceSnapshotCache.getSerializedSegmentSnapshot(EventSegment.FAIR,
+                PayloadEncoding.COLUMNAR));
+
+        presenceRegistry.removePharmacyRepresentative(1L);
+
+        assertNotSame(everyone, presenceSnapshotCache.getSerializedSnapshot());
+        assertNotSame(fair, presenceSnapshotCache.getSerializedSegmentSnapshot(EventSegment.FAIR,
+                PayloadEncoding.JSON));
+    }
+
+    @Test
+    void anOlderSnapshotDoesNotEvictANewerOne() {
+        PresenceRegistry presenceRegistry = mock(PresenceRegistry.class);
+        PresenceSnapshotCache presenceSnapshotCache = new PresenceSnapshotCache(presenceRegistry,
+                presenceSnapshotEncoder);
+
+        // A request that read the registry just before a change finishes after one that read it just after
+        when(presenceRegistry.snapshot()).thenReturn(snapshot(2), snapshot(1), snapshot(2));
+
+        SerializedPayloadDto newer = presenceSnapshotCache.getSerializedSnapshot();
+        presenceSnapshotCache.getSerializedSnapshot();
+
+        assertSame(newer, presenceSnapshotCache.getSerializedSnapshot());
+    }
+
+    private static EntitiesListResponseDto snapshot(long version) {
+        return new EntitiesListResponseDto(List.of(), List.of(), version);
+    }
+}